@@ -0,0 +1,33 @@
+package com.example.benchmark;
+
+import com.example.restapi.model.User;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Deterministic fixtures shared by the JMH benchmarks
+final class BenchmarkUsers {
+
+    private BenchmarkUsers() {
+    }
+
+    static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setName("Benchmark User " + id);
+        user.setEmail("benchmark.user." + id + "@example.com");
+        user.setPhone("555-" + String.format("%04d", id % 10000));
+        user.setVersion(id % 7);
+        user.setUpdatedAt(Instant.parse("2024-01-01T00:00:00Z").plusSeconds(id));
+        return user;
+    }
+
+    static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            users.add(user(i));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.benchmark;
+
+import com.example.restapi.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JSON side of the REST API, with an ObjectMapper configured like Spring's
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private User user;
+
+    @State(Scope.Benchmark)
+    public static class Lists {
+        @Param({"1", "10", "100", "1000"})
+        private int listSize;
+
+        private List<User> users;
+
+        @Setup
+        public void setUp() {
+            users = BenchmarkUsers.users(listSize);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        user = BenchmarkUsers.user(42);
+    }
+
+    @Benchmark
+    public byte[] serializeUser() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] serializeUserList(Lists lists) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(lists.users);
+    }
+}
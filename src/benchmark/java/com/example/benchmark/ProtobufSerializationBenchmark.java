@@ -0,0 +1,62 @@
+package com.example.benchmark;
+
+import com.example.grpc.user.UserListResponse;
+import com.example.grpc.user.UserResponse;
+import com.example.mapping.UserMapper;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtobufSerializationBenchmark {
+
+    private UserResponse user;
+    private byte[] userBytes;
+
+    @State(Scope.Benchmark)
+    public static class Lists {
+        @Param({"1", "10", "100", "1000"})
+        private int listSize;
+
+        private UserListResponse userList;
+        private byte[] userListBytes;
+
+        @Setup
+        public void setUp() {
+            userList = UserMapper.toUserListResponse(BenchmarkUsers.users(listSize));
+            userListBytes = userList.toByteArray();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        user = UserMapper.toUserResponse(BenchmarkUsers.user(42));
+        userBytes = user.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serializeUser() {
+        return user.toByteArray();
+    }
+
+    @Benchmark
+    public UserResponse parseUser() throws InvalidProtocolBufferException {
+        return UserResponse.parseFrom(userBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeUserList(Lists lists) {
+        return lists.userList.toByteArray();
+    }
+
+    @Benchmark
+    public UserListResponse parseUserList(Lists lists) throws InvalidProtocolBufferException {
+        return UserListResponse.parseFrom(lists.userListBytes);
+    }
+}
@@ -0,0 +1,371 @@
+// ProtocolComparisonBenchmark.java - same workloads over REST and gRPC
+package com.example.benchmark;
+
+import com.example.grpc.user.CreateUserRequest;
+import com.example.grpc.user.Empty;
+import com.example.grpc.user.GetUserRequest;
+import com.example.grpc.user.UserResponse;
+import com.example.grpc.user.UserServiceGrpc;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs identical workloads against the REST and gRPC front ends of one
+ * running instance and reports, per scenario and protocol, latency
+ * percentiles, throughput, response bytes per request and (with
+ * {@code --server-pid}, Linux only) server CPU time per request.
+ *
+ * <p>Scenarios: single get, list at each table size, NDJSON vs StreamUsers
+ * at each table size, and a burst of creates. Bytes are message payload as
+ * it crosses the wire (after any content encoding), not HTTP headers.
+ * Start the server with {@code --rate-limit.enabled=false}, or the list and
+ * stream scenarios mostly measure 429s and RESOURCE_EXHAUSTED.
+ *
+ * <pre>
+ * mvn -Pbenchmark compile exec:java \
+ *     -Dexec.mainClass=com.example.benchmark.ProtocolComparisonBenchmark \
+ *     -Dexec.args="--sizes 10,100,1000 --requests 2000 --concurrency 8 --server-pid 12345"
+ * </pre>
+ */
+public class ProtocolComparisonBenchmark {
+
+    private static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // USER_HZ on practically every Linux build; /proc/pid/stat reports CPU in these ticks
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+
+    private final String restUrl;
+    private final HttpClient httpClient;
+    private final ManagedChannel channel;
+    private final UserServiceGrpc.UserServiceBlockingStub grpcStub;
+    private final Long serverPid;
+    private final int concurrency;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong emailSequence = new AtomicLong();
+    private final List<Long> knownIds = new ArrayList<>();
+    private final List<ScenarioResult> results = new ArrayList<>();
+
+    // Bytes received by gRPC calls on the calling thread, from the stream tracer
+    private final ThreadLocal<long[]> grpcInboundBytes = ThreadLocal.withInitial(() -> new long[1]);
+
+    public ProtocolComparisonBenchmark(String restUrl, String grpcTarget, boolean http2, Long serverPid, int concurrency) {
+        this.restUrl = restUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .build();
+        this.channel = ManagedChannelBuilder.forTarget(grpcTarget)
+                .usePlaintext()
+                .intercept(new InboundBytesInterceptor())
+                .build();
+        this.grpcStub = UserServiceGrpc.newBlockingStub(channel);
+        this.serverPid = serverPid;
+        this.concurrency = concurrency;
+    }
+
+    public record ScenarioResult(String scenario, String protocol, Histogram histogram,
+                                 long elapsedNanos, long bytes, long cpuNanos) {
+        double throughput() {
+            return histogram.getTotalCount() / (elapsedNanos / 1e9);
+        }
+
+        long bytesPerRequest() {
+            return histogram.getTotalCount() == 0 ? 0 : bytes / histogram.getTotalCount();
+        }
+
+        double cpuMicrosPerRequest() {
+            return cpuNanos < 0 || histogram.getTotalCount() == 0 ? Double.NaN
+                    : cpuNanos / 1000.0 / histogram.getTotalCount();
+        }
+    }
+
+    @FunctionalInterface
+    interface Operation {
+        // Performs one request and returns the response bytes received
+        long call() throws Exception;
+    }
+
+    private class InboundBytesInterceptor implements ClientInterceptor {
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+                MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+            long[] counter = grpcInboundBytes.get();
+            ClientStreamTracer.Factory factory = new ClientStreamTracer.Factory() {
+                @Override
+                public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                    return new ClientStreamTracer() {
+                        @Override
+                        public void inboundWireSize(long bytes) {
+                            synchronized (counter) {
+                                counter[0] += bytes;
+                            }
+                        }
+                    };
+                }
+            };
+            return next.newCall(method, callOptions.withStreamTracerFactory(factory));
+        }
+    }
+
+    // Runs `requests` calls from `concurrency` threads and records the result
+    private void scenario(String name, String protocol, int requests, Operation operation) throws Exception {
+        Recorder recorder = new Recorder(MAX_TRACKABLE_NANOS, 3);
+        AtomicLong remaining = new AtomicLong(requests);
+        AtomicLong bytes = new AtomicLong();
+
+        long cpuBefore = serverCpuNanos();
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> {
+                    while (remaining.getAndDecrement() > 0) {
+                        long begin = System.nanoTime();
+                        long received = operation.call();
+                        recorder.recordValue(Math.min(System.nanoTime() - begin, MAX_TRACKABLE_NANOS));
+                        bytes.addAndGet(received);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        long cpuAfter = serverCpuNanos();
+
+        ScenarioResult result = new ScenarioResult(name, protocol, recorder.getIntervalHistogram(), elapsed,
+                bytes.get(), cpuBefore < 0 ? -1 : cpuAfter - cpuBefore);
+        results.add(result);
+        System.err.printf(Locale.ROOT, "finished %s/%s: %.1f req/s%n", name, protocol, result.throughput());
+    }
+
+    private long serverCpuNanos() {
+        if (serverPid == null) {
+            return -1;
+        }
+        try {
+            // Fields after the parenthesised command name; utime and stime are 14 and 15
+            String stat = Files.readString(Path.of("/proc", serverPid.toString(), "stat"));
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+            return ticks * TimeUnit.SECONDS.toNanos(1) / CLOCK_TICKS_PER_SECOND;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    // REST operations
+
+    private long restGet(String path, String accept) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(restUrl + path))
+                .header("Accept", accept)
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + path + " returned " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    private long restStream() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(restUrl + "/api/users"))
+                .header("Accept", "application/x-ndjson")
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        long total = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream in = response.body()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    private long restCreate() throws Exception {
+        String body = String.format("{\"name\":\"Bench User\",\"email\":\"%s\",\"phone\":\"555-0199\"}", nextEmail());
+        HttpRequest request = HttpRequest.newBuilder(URI.create(restUrl + "/api/users"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("POST /api/users returned " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    // gRPC operations
+
+    private long grpcCall(Runnable call) {
+        long[] counter = grpcInboundBytes.get();
+        long before;
+        synchronized (counter) {
+            before = counter[0];
+        }
+        call.run();
+        synchronized (counter) {
+            return counter[0] - before;
+        }
+    }
+
+    private long grpcStream() {
+        return grpcCall(() -> {
+            Iterator<UserResponse> users = grpcStub.streamUsers(Empty.getDefaultInstance());
+            while (users.hasNext()) {
+                users.next();
+            }
+        });
+    }
+
+    private UserResponse grpcCreate() {
+        return grpcStub.createUser(CreateUserRequest.newBuilder()
+                .setName("Bench User")
+                .setEmail(nextEmail())
+                .setPhone("555-0199")
+                .build());
+    }
+
+    private String nextEmail() {
+        return "bench-" + runId + "-" + emailSequence.incrementAndGet() + "@bench.test";
+    }
+
+    private long randomKnownId() {
+        return knownIds.get(ThreadLocalRandom.current().nextInt(knownIds.size()));
+    }
+
+    // Rows left by an earlier run count towards the size, and GETs pick from
+    // them too
+    private void growTableTo(int size) {
+        knownIds.clear();
+        for (UserResponse user : grpcStub.getAllUsers(Empty.getDefaultInstance()).getUsersList()) {
+            knownIds.add(user.getId());
+        }
+        for (int i = knownIds.size(); i < size; i++) {
+            knownIds.add(grpcCreate().getId());
+        }
+        if (knownIds.isEmpty()) {
+            knownIds.add(grpcCreate().getId());
+        }
+    }
+
+    public void run(int[] sizes, int requests, int burst) throws Exception {
+        Arrays.sort(sizes);
+
+        // Warm both paths up before anything is measured
+        growTableTo(sizes[0]);
+        scenario("warmup", "rest", requests, () -> restGet("/api/users/" + randomKnownId(), "application/json"));
+        scenario("warmup", "grpc", requests, () -> grpcCall(() -> grpcStub.getUser(
+                GetUserRequest.newBuilder().setId(randomKnownId()).build())));
+        results.clear();
+
+        scenario("get", "rest", requests, () -> restGet("/api/users/" + randomKnownId(), "application/json"));
+        scenario("get", "grpc", requests, () -> grpcCall(() -> grpcStub.getUser(
+                GetUserRequest.newBuilder().setId(randomKnownId()).build())));
+
+        for (int size : sizes) {
+            growTableTo(size);
+            int listRequests = Math.max(concurrency, requests / Math.max(1, size / 10));
+            scenario("list@" + size, "rest", listRequests, () -> restGet("/api/users", "application/json"));
+            scenario("list@" + size, "grpc", listRequests,
+                    () -> grpcCall(() -> grpcStub.getAllUsers(Empty.getDefaultInstance())));
+            scenario("stream@" + size, "rest", listRequests, this::restStream);
+            scenario("stream@" + size, "grpc", listRequests, this::grpcStream);
+        }
+
+        scenario("create-burst", "rest", burst, this::restCreate);
+        scenario("create-burst", "grpc", burst, () -> grpcCall(this::grpcCreate));
+    }
+
+    public void report(PrintStream out, boolean csv) {
+        if (csv) {
+            out.println("scenario,protocol,count,throughput,p50_ms,p90_ms,p99_ms,max_ms,bytes_per_request,server_cpu_us_per_request");
+        } else {
+            out.printf(Locale.ROOT, "%-16s %-5s %8s %10s %9s %9s %9s %9s %12s %12s%n",
+                    "scenario", "proto", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "bytes/req", "cpu us/req");
+        }
+        for (ScenarioResult result : results) {
+            Histogram h = result.histogram();
+            String format = csv
+                    ? "%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%.1f%n"
+                    : "%-16s %-5s %8d %10.1f %9.3f %9.3f %9.3f %9.3f %12d %12.1f%n";
+            out.printf(Locale.ROOT, format, result.scenario(), result.protocol(), h.getTotalCount(),
+                    result.throughput(), h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(90) / 1e6,
+                    h.getValueAtPercentile(99) / 1e6, h.getMaxValue() / 1e6, result.bytesPerRequest(),
+                    result.cpuMicrosPerRequest());
+        }
+    }
+
+    public void shutdown() throws InterruptedException {
+        channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String rest = "http://localhost:8080";
+        String grpc = "localhost:9090";
+        int[] sizes = {10, 100, 1000};
+        int requests = 2000;
+        int burst = 500;
+        int concurrency = 8;
+        boolean http2 = false;
+        boolean csv = false;
+        Long serverPid = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rest" -> rest = args[++i];
+                case "--grpc" -> grpc = args[++i];
+                case "--sizes" -> sizes = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--requests" -> requests = Integer.parseInt(args[++i]);
+                case "--burst" -> burst = Integer.parseInt(args[++i]);
+                case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                case "--server-pid" -> serverPid = Long.parseLong(args[++i]);
+                case "--http2" -> http2 = true;
+                case "--csv" -> csv = true;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        ProtocolComparisonBenchmark benchmark = new ProtocolComparisonBenchmark(rest, grpc, http2, serverPid, concurrency);
+        try {
+            benchmark.run(sizes, requests, burst);
+            benchmark.report(System.out, csv);
+        } finally {
+            benchmark.shutdown();
+        }
+    }
+}
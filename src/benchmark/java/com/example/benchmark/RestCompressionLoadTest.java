@@ -0,0 +1,126 @@
+// RestCompressionLoadTest.java - HTTP/1.1 vs HTTP/2 + gzip on GET /api/users
+package com.example.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares throughput and bytes on the wire for the user list endpoint with
+ * and without the {@code prod} profile settings. Run against a server started
+ * with {@code --spring.profiles.active=prod --rate-limit.enabled=false} (the
+ * default quota would throttle the list calls):
+ *
+ * <pre>
+ * mvn -Pbenchmark compile exec:java \
+ *     -Dexec.mainClass=com.example.benchmark.RestCompressionLoadTest \
+ *     -Dexec.args="http://localhost:8080 500 8 20"
+ * </pre>
+ *
+ * Arguments: base url, users to seed, concurrency, seconds per scenario.
+ */
+public class RestCompressionLoadTest {
+
+    private final String baseUrl;
+    private final int concurrency;
+    private final Duration duration;
+
+    public RestCompressionLoadTest(String baseUrl, int concurrency, Duration duration) {
+        this.baseUrl = baseUrl;
+        this.concurrency = concurrency;
+        this.duration = duration;
+    }
+
+    // Seed the table so the list response is large enough to be compressed
+    public void seed(int users) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        long suffix = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            String body = String.format(
+                    "{\"name\":\"Load User %d\",\"email\":\"load-%d-%d@example.com\",\"phone\":\"555-%04d\"}",
+                    i, suffix, i, i % 10000);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/users"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    public Result run(String label, HttpClient.Version version, boolean gzip) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(version).build();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + "/api/users"))
+                .header("Accept", "application/json");
+        if (gzip) {
+            builder.header("Accept-Encoding", "gzip");
+        }
+        HttpRequest request = builder.build();
+
+        AtomicLong requests = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        // HttpClient never decodes Content-Encoding, so this is the wire size
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        bytes.addAndGet(response.body().length);
+                        requests.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return new Result(label, requests.get(), bytes.get(), duration);
+    }
+
+    public record Result(String label, long requests, long bytes, Duration duration) {
+        double throughput() {
+            return requests / (duration.toMillis() / 1000.0);
+        }
+
+        long bytesPerResponse() {
+            return requests == 0 ? 0 : bytes / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-22s %10.1f req/s %12d bytes/response", label, throughput(), bytesPerResponse());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        RestCompressionLoadTest test = new RestCompressionLoadTest(baseUrl, concurrency, Duration.ofSeconds(seconds));
+        test.seed(users);
+
+        // Warm up the server before measuring
+        test.run("warmup", HttpClient.Version.HTTP_1_1, false);
+
+        System.out.println(test.run("HTTP/1.1 identity", HttpClient.Version.HTTP_1_1, false));
+        System.out.println(test.run("HTTP/1.1 gzip", HttpClient.Version.HTTP_1_1, true));
+        System.out.println(test.run("HTTP/2 (h2c) identity", HttpClient.Version.HTTP_2, false));
+        System.out.println(test.run("HTTP/2 (h2c) gzip", HttpClient.Version.HTTP_2, true));
+    }
+}
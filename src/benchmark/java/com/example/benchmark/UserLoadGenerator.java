@@ -0,0 +1,396 @@
+// UserLoadGenerator.java - ghz-style load test built on UserGrpcClient
+package com.example.benchmark;
+
+import com.example.grpc.client.UserGrpcClient;
+import com.example.grpc.user.UserResponse;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a weighted mix of RPCs against a running server and reports latency
+ * percentiles and throughput per operation.
+ *
+ * <p>With a target {@code --rate} the schedule is open loop: request i is due
+ * at {@code start + i / rate} regardless of how earlier requests went, and
+ * latency is measured from that due time. A stalled server therefore shows up
+ * as queueing delay in the percentiles instead of silently lowering the
+ * offered load (coordinated omission). {@code --rate 0} runs closed loop,
+ * each worker sending as fast as responses come back.
+ *
+ * <pre>
+ * mvn -Pbenchmark compile exec:java -Dexec.mainClass=com.example.benchmark.UserLoadGenerator -Dexec.args="\
+ *     --target localhost:9090 --mix get=80,list=5,create=5,update=5,delete=5 \
+ *     --concurrency 32 --rate 2000 --duration 60s --warmup 10s --format json --output result.json"
+ * </pre>
+ *
+ * Rejections by the server's per-caller rate limit count as errors; start it
+ * with {@code --rate-limit.enabled=false} to measure raw capacity.
+ */
+public class UserLoadGenerator {
+
+    public enum Operation {
+        GET, LIST, CREATE, UPDATE, DELETE, STREAM
+    }
+
+    // Highest latency the histograms track, with 3 significant digits
+    private static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final UserGrpcClient client;
+    private final Options options;
+    private final Operation[] schedule;
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    private final long[] seededIds;
+    private final ConcurrentLinkedQueue<Long> createdIds = new ConcurrentLinkedQueue<>();
+    private final AtomicLong emailSequence = new AtomicLong();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    public UserLoadGenerator(UserGrpcClient client, Options options) {
+        this.client = client;
+        this.options = options;
+        this.schedule = options.scheduleTable();
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(MAX_TRACKABLE_NANOS, 3));
+            errors.put(operation, new AtomicLong());
+        }
+        this.seededIds = new long[options.seedUsers];
+    }
+
+    public static class Options {
+        String target = "localhost:9090";
+        Map<Operation, Integer> mix = defaultMix();
+        int concurrency = 16;
+        int channels = 1;
+        double rate = 0;
+        Duration duration = Duration.ofSeconds(30);
+        Duration warmup = Duration.ofSeconds(5);
+        int seedUsers = 100;
+        String format = "text";
+        Path output;
+
+        private static Map<Operation, Integer> defaultMix() {
+            Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+            mix.put(Operation.GET, 80);
+            mix.put(Operation.LIST, 5);
+            mix.put(Operation.CREATE, 5);
+            mix.put(Operation.UPDATE, 5);
+            mix.put(Operation.DELETE, 5);
+            return mix;
+        }
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String name = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + name);
+                }
+                String value = args[++i];
+                switch (name) {
+                    case "--target" -> options.target = value;
+                    case "--mix" -> options.mix = parseMix(value);
+                    case "--concurrency" -> options.concurrency = Integer.parseInt(value);
+                    case "--channels" -> options.channels = Integer.parseInt(value);
+                    case "--rate" -> options.rate = Double.parseDouble(value);
+                    case "--duration" -> options.duration = parseDuration(value);
+                    case "--warmup" -> options.warmup = parseDuration(value);
+                    case "--seed-users" -> options.seedUsers = Integer.parseInt(value);
+                    case "--format" -> options.format = value.toLowerCase(Locale.ROOT);
+                    case "--output" -> options.output = Path.of(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + name);
+                }
+            }
+            if (options.seedUsers < 1) {
+                throw new IllegalArgumentException("--seed-users must be at least 1");
+            }
+            return options;
+        }
+
+        // "get=80,list=5,stream=1"
+        static Map<Operation, Integer> parseMix(String value) {
+            Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+            for (String part : value.split(",")) {
+                String[] pair = part.split("=");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Bad mix entry: " + part);
+                }
+                mix.put(Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(pair[1].trim()));
+            }
+            return mix;
+        }
+
+        // "30s", "2m", "500ms" or plain seconds
+        static Duration parseDuration(String value) {
+            if (value.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+            }
+            if (value.endsWith("s")) {
+                return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+            }
+            if (value.endsWith("m")) {
+                return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+            }
+            return Duration.ofSeconds(Long.parseLong(value));
+        }
+
+        // Operations laid out in proportion to their weights, picked at random
+        Operation[] scheduleTable() {
+            List<Operation> table = new ArrayList<>();
+            mix.forEach((operation, weight) -> {
+                for (int i = 0; i < weight; i++) {
+                    table.add(operation);
+                }
+            });
+            if (table.isEmpty()) {
+                throw new IllegalArgumentException("RPC mix has no positive weights");
+            }
+            return table.toArray(new Operation[0]);
+        }
+    }
+
+    public record OperationResult(Operation operation, Histogram histogram, long errors) {
+    }
+
+    public record Result(Duration elapsed, List<OperationResult> operations) {
+        long totalCount() {
+            return operations.stream().mapToLong(op -> op.histogram().getTotalCount()).sum();
+        }
+    }
+
+    public void seed() {
+        for (int i = 0; i < seededIds.length; i++) {
+            seededIds[i] = client.createUser("Load Seed " + i, nextEmail(), "555-0100").getId();
+        }
+    }
+
+    public Result run() throws Exception {
+        if (!options.warmup.isZero()) {
+            drive(options.warmup);
+            // Discard everything recorded during warmup
+            recorders.values().forEach(Recorder::reset);
+            errors.values().forEach(counter -> counter.set(0));
+        }
+        long start = System.nanoTime();
+        drive(options.duration);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        List<OperationResult> results = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            long errorCount = errors.get(operation).get();
+            if (histogram.getTotalCount() > 0 || errorCount > 0) {
+                results.add(new OperationResult(operation, histogram, errorCount));
+            }
+        }
+        return new Result(elapsed, results);
+    }
+
+    private void drive(Duration duration) throws Exception {
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long intervalNanos = options.rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / options.rate) : 0;
+        AtomicLong sequence = new AtomicLong();
+
+        ExecutorService workers = Executors.newFixedThreadPool(options.concurrency);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < options.concurrency; i++) {
+                futures.add(workers.submit(() -> {
+                    while (true) {
+                        long due;
+                        if (intervalNanos > 0) {
+                            due = start + sequence.getAndIncrement() * intervalNanos;
+                            if (due >= end) {
+                                return null;
+                            }
+                            long wait = due - System.nanoTime();
+                            if (wait > 0) {
+                                LockSupport.parkNanos(wait);
+                            }
+                        } else {
+                            due = System.nanoTime();
+                            if (due >= end) {
+                                return null;
+                            }
+                        }
+                        execute(schedule[ThreadLocalRandom.current().nextInt(schedule.length)], due);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void execute(Operation operation, long due) {
+        try {
+            switch (operation) {
+                case GET -> client.getUser(randomSeededId());
+                case LIST -> client.getAllUsers();
+                case CREATE -> createdIds.add(client.createUser("Load User", nextEmail(), "555-0101").getId());
+                case UPDATE -> {
+                    long id = randomSeededId();
+                    client.updateUser(id, "Load Seed " + id, "seed-" + runId + "-" + id + "@load.test", "555-0102");
+                }
+                case DELETE -> {
+                    Long id = createdIds.poll();
+                    if (id == null) {
+                        // Nothing of ours left to delete; make one first. The
+                        // sample still counts from its scheduled time, so the
+                        // extra create shows up as delay rather than vanishing.
+                        id = client.createUser("Load User", nextEmail(), "555-0101").getId();
+                    }
+                    client.deleteUser(id);
+                }
+                case STREAM -> drainStream();
+            }
+            recorders.get(operation).recordValue(Math.min(System.nanoTime() - due, MAX_TRACKABLE_NANOS));
+        } catch (RuntimeException e) {
+            errors.get(operation).incrementAndGet();
+        }
+    }
+
+    private void drainStream() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        client.streamUsersPublisher().subscribe(new Flow.Subscriber<UserResponse>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(UserResponse user) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.completeExceptionally(t);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.join();
+    }
+
+    private long randomSeededId() {
+        return seededIds[ThreadLocalRandom.current().nextInt(seededIds.length)];
+    }
+
+    private String nextEmail() {
+        return "load-" + runId + "-" + emailSequence.incrementAndGet() + "@load.test";
+    }
+
+    // Reporting
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    static void writeText(Result result, PrintStream out) {
+        out.printf(Locale.ROOT, "Elapsed %.1fs, %d requests, %.1f req/s%n",
+                result.elapsed().toMillis() / 1000.0, result.totalCount(),
+                result.totalCount() / (result.elapsed().toNanos() / 1e9));
+        out.printf(Locale.ROOT, "%-8s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                "op", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (OperationResult op : result.operations()) {
+            Histogram h = op.histogram();
+            out.printf(Locale.ROOT, "%-8s %10d %8d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                    op.operation().name().toLowerCase(Locale.ROOT), h.getTotalCount(), op.errors(),
+                    h.getTotalCount() / (result.elapsed().toNanos() / 1e9),
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                    millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+                    millis(h.getMaxValue()));
+        }
+    }
+
+    static void writeCsv(Result result, PrintStream out) {
+        out.println("operation,count,errors,throughput,p50_ms,p90_ms,p99_ms,p999_ms,max_ms");
+        for (OperationResult op : result.operations()) {
+            Histogram h = op.histogram();
+            out.printf(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                    op.operation().name().toLowerCase(Locale.ROOT), h.getTotalCount(), op.errors(),
+                    h.getTotalCount() / (result.elapsed().toNanos() / 1e9),
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                    millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+                    millis(h.getMaxValue()));
+        }
+    }
+
+    static void writeJson(Result result, PrintStream out) {
+        StringBuilder json = new StringBuilder();
+        json.append(String.format(Locale.ROOT, "{\"elapsed_s\":%.3f,\"requests\":%d,\"operations\":[",
+                result.elapsed().toNanos() / 1e9, result.totalCount()));
+        for (int i = 0; i < result.operations().size(); i++) {
+            OperationResult op = result.operations().get(i);
+            Histogram h = op.histogram();
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT,
+                    "{\"operation\":\"%s\",\"count\":%d,\"errors\":%d,\"throughput\":%.3f,"
+                            + "\"p50_ms\":%.3f,\"p90_ms\":%.3f,\"p99_ms\":%.3f,\"p999_ms\":%.3f,\"max_ms\":%.3f}",
+                    op.operation().name().toLowerCase(Locale.ROOT), h.getTotalCount(), op.errors(),
+                    h.getTotalCount() / (result.elapsed().toNanos() / 1e9),
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                    millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+                    millis(h.getMaxValue())));
+        }
+        json.append("]}");
+        out.println(json);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        String[] target = options.target.split(":");
+        int maxInFlight = Math.max(UserGrpcClient.DEFAULT_MAX_IN_FLIGHT, options.concurrency);
+        UserGrpcClient client = new UserGrpcClient(target[0], Integer.parseInt(target[1]), maxInFlight, options.channels);
+        try {
+            UserLoadGenerator generator = new UserLoadGenerator(client, options);
+            generator.seed();
+            Result result = generator.run();
+
+            PrintStream out = options.output != null
+                    ? new PrintStream(Files.newOutputStream(options.output), true)
+                    : System.out;
+            try {
+                switch (options.format) {
+                    case "csv" -> writeCsv(result, out);
+                    case "json" -> writeJson(result, out);
+                    default -> writeText(result, out);
+                }
+            } finally {
+                if (out != System.out) {
+                    out.close();
+                }
+            }
+        } finally {
+            client.shutdown();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.benchmark;
+
+import com.example.grpc.user.UserListResponse;
+import com.example.grpc.user.UserResponse;
+import com.example.mapping.UserMapper;
+import com.example.restapi.model.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Entity -> protobuf mapping used by every gRPC and protobuf REST response
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMappingBenchmark {
+
+    private User user;
+
+    @State(Scope.Benchmark)
+    public static class Lists {
+        @Param({"1", "10", "100", "1000"})
+        private int listSize;
+
+        private List<User> users;
+
+        @Setup
+        public void setUp() {
+            users = BenchmarkUsers.users(listSize);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        user = BenchmarkUsers.user(42);
+    }
+
+    @Benchmark
+    public UserResponse mapUser() {
+        return UserMapper.toUserResponse(user);
+    }
+
+    @Benchmark
+    public UserListResponse mapUserList(Lists lists) {
+        return UserMapper.toUserListResponse(lists.users);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.benchmark;
+
+import com.example.grpc.service.StatusMapper;
+import com.example.restapi.service.UserNotFoundException;
+import io.grpc.Status;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Cost of answering a lookup for an id that doesn't exist, from the service
+// throwing to the status the gRPC layer sends. The handler runs deep inside
+// the server's stack, so the throw happens under callDepth extra frames.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMissBenchmark {
+
+    @Param({"0", "100"})
+    private int callDepth;
+
+    private long id = 1_000_000;
+
+    // What getUserById used to throw; UNKNOWN on the wire
+    @Benchmark
+    public Throwable runtimeException() {
+        return atDepth(callDepth, () -> {
+            long missing = id++;
+            return Optional.empty().orElseThrow(() -> new RuntimeException("User not found with id: " + missing));
+        });
+    }
+
+    @Benchmark
+    public Throwable stacklessException() {
+        return atDepth(callDepth, () -> {
+            long missing = id++;
+            return Optional.empty().orElseThrow(() -> new UserNotFoundException(missing));
+        });
+    }
+
+    // The full miss path: throw, then map to NOT_FOUND with its description
+    @Benchmark
+    public Status stacklessToStatus() {
+        Throwable e = stacklessException();
+        return Status.fromThrowable(StatusMapper.toStatusException(e));
+    }
+
+    private static Throwable atDepth(int depth, Lookup lookup) {
+        if (depth > 0) {
+            return atDepth(depth - 1, lookup);
+        }
+        try {
+            lookup.get();
+            throw new AssertionError("lookup should have missed");
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private interface Lookup {
+        Object get();
+    }
+}
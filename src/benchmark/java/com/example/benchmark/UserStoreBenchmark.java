@@ -0,0 +1,108 @@
+package com.example.benchmark;
+
+import com.example.Application;
+import com.example.grpc.user.UserResponse;
+import com.example.restapi.model.User;
+import com.example.restapi.repository.UserStore;
+import com.example.restapi.service.UserVersionConflictException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Point reads and writes against each UserStore, inside the real application
+// context (so the JPA store runs with its second-level cache and H2) but
+// without the web and gRPC layers on top
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserStoreBenchmark {
+
+    private static final int USERS = 10_000;
+
+    @Param({"jpa", "mmap", "offheap"})
+    private String store;
+
+    private ConfigurableApplicationContext context;
+    private UserStore userStore;
+    private Path directory;
+    private final AtomicLong emails = new AtomicLong();
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("user-store-benchmark");
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                // Arguments, so they win over application.properties
+                .run("--user.store.type=" + store,
+                        "--user.store.mmap.directory=" + directory,
+                        "--grpc.server.port=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.com.example=WARN");
+        userStore = context.getBean(UserStore.class);
+        for (User user : BenchmarkUsers.users(USERS)) {
+            user.setId(null);
+            userStore.insert(user);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public User pointRead() {
+        return userStore.findById(randomId()).orElseThrow();
+    }
+
+    // What GetUser sends; the buffer-backed stores skip the User object
+    @Benchmark
+    public UserResponse pointReadResponse() {
+        return userStore.findResponseById(randomId()).orElseThrow();
+    }
+
+    // Unconditional update of name and phone; the email stays the same. Run
+    // with -t > 1 and two threads can race on one row, which JPA reports as
+    // a conflict.
+    @Benchmark
+    public User update() {
+        long id = randomId();
+        User details = BenchmarkUsers.user(id);
+        details.setPhone("555-" + ThreadLocalRandom.current().nextInt(10_000));
+        try {
+            return userStore.update(id, null, details);
+        } catch (UserVersionConflictException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public User insert() {
+        User user = BenchmarkUsers.user(0);
+        user.setId(null);
+        user.setEmail("benchmark.insert." + emails.incrementAndGet() + "@example.com");
+        return userStore.insert(user);
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, USERS + 1);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.executor;
+
+/**
+ * Classes of UserService work that get their own threads, so a burst of one
+ * can't queue up behind the other: sub-millisecond point reads, writes that
+ * hold a transaction, and table scans that can run for seconds.
+ */
+public enum Lane {
+    POINT_READ,
+    WRITE,
+    SCAN;
+    
+    // null for methods that stay on the default executor (long-lived streams)
+    public static Lane forMethod(String bareMethodName) {
+        return switch (bareMethodName) {
+            case "GetUser", "GetUsers" -> POINT_READ;
+            case "CreateUser", "UpdateUser", "DeleteUser" -> WRITE;
+            case "GetAllUsers", "StreamUsers" -> SCAN;
+            default -> null;
+        };
+    }
+}
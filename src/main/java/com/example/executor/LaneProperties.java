@@ -0,0 +1,41 @@
+package com.example.executor;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per-lane concurrency and queue limits. gRPC runs each lane on a pool of
+ * {@code threads} and sheds calls once {@code queueLimit} are waiting to
+ * start; REST lets {@code threads} requests per lane run at once and up to
+ * {@code queueLimit} wait, without a thread, for at most
+ * {@code restQueueTimeout}.
+ */
+@Data
+@ConfigurationProperties(prefix = "executor-lanes")
+public class LaneProperties {
+    
+    private Map<Lane, Limits> lanes = new EnumMap<>(Map.of(
+            Lane.POINT_READ, new Limits(16, 1000),
+            Lane.WRITE, new Limits(8, 500),
+            Lane.SCAN, new Limits(4, 16)));
+    
+    private Duration restQueueTimeout = Duration.ofSeconds(5);
+    
+    public Limits limits(Lane lane) {
+        return lanes.get(lane);
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limits {
+        private int threads;
+        private int queueLimit;
+    }
+}
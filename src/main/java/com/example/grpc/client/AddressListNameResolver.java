@@ -0,0 +1,119 @@
+// AddressListNameResolver.java - resolves a fixed or file-backed list of backends
+package com.example.grpc.client;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Hands the channel one address group per backend so a load balancing policy
+ * such as round_robin can open a connection to each of them. The address list
+ * comes from a supplier that is re-evaluated on {@link #refresh()} and, when
+ * a refresh interval is given, periodically (used to pick up edits to a
+ * targets file).
+ */
+class AddressListNameResolver extends NameResolver {
+
+    private final String authority;
+    private final Supplier<List<String>> targets;
+    private final long refreshIntervalMillis;
+    private final Executor offloadExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final SynchronizationContext syncContext;
+
+    private Listener2 listener;
+    private ScheduledFuture<?> scheduledRefresh;
+    private boolean resolving;
+    private boolean shutdown;
+
+    AddressListNameResolver(String authority, Supplier<List<String>> targets, long refreshIntervalMillis, Args args) {
+        this.authority = authority;
+        this.targets = targets;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.offloadExecutor = args.getOffloadExecutor() != null ? args.getOffloadExecutor() : Runnable::run;
+        this.scheduler = args.getScheduledExecutorService();
+        this.syncContext = args.getSynchronizationContext();
+    }
+
+    @Override
+    public String getServiceAuthority() {
+        return authority;
+    }
+
+    @Override
+    public void start(Listener2 listener) {
+        this.listener = listener;
+        resolve();
+        if (refreshIntervalMillis > 0) {
+            scheduledRefresh = scheduler.scheduleWithFixedDelay(
+                    () -> syncContext.execute(this::resolve),
+                    refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void refresh() {
+        resolve();
+    }
+
+    // Runs in the synchronization context; the lookup itself (file read and
+    // DNS) happens on the offload executor
+    private void resolve() {
+        if (resolving || shutdown) {
+            return;
+        }
+        resolving = true;
+        offloadExecutor.execute(() -> {
+            List<EquivalentAddressGroup> groups = new ArrayList<>();
+            Status error = null;
+            try {
+                for (String target : targets.get()) {
+                    groups.add(new EquivalentAddressGroup(parseAddress(target)));
+                }
+                if (groups.isEmpty()) {
+                    error = Status.UNAVAILABLE.withDescription("No backend addresses for " + authority);
+                }
+            } catch (RuntimeException e) {
+                error = Status.UNAVAILABLE.withDescription("Failed to resolve " + authority).withCause(e);
+            }
+            Status result = error;
+            syncContext.execute(() -> {
+                resolving = false;
+                if (shutdown) {
+                    return;
+                }
+                if (result != null) {
+                    listener.onError(result);
+                } else {
+                    listener.onResult(ResolutionResult.newBuilder().setAddresses(groups).build());
+                }
+            });
+        });
+    }
+
+    static InetSocketAddress parseAddress(String target) {
+        int colon = target.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Expected host:port but got " + target);
+        }
+        return new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+    }
+}
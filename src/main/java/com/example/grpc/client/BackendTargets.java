@@ -0,0 +1,106 @@
+// BackendTargets.java - the static:/// and file:/// target schemes
+package com.example.grpc.client;
+
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.NameResolverRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Target syntax for talking to several server replicas directly:
+ * <ul>
+ *   <li>{@code static:///host1:9090,host2:9090} - a fixed list</li>
+ *   <li>{@code file:///etc/users/backends} - one {@code host:port} per line,
+ *       blank lines and {@code #} comments ignored, re-read every 30 seconds</li>
+ * </ul>
+ * Anything else (e.g. {@code dns:///users:9090}) is left to gRPC's built-in
+ * resolvers.
+ */
+public final class BackendTargets {
+
+    static final long FILE_REFRESH_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static volatile boolean registered;
+
+    private BackendTargets() {
+    }
+
+    // Makes both schemes available to ManagedChannelBuilder.forTarget
+    public static synchronized void register() {
+        if (!registered) {
+            NameResolverRegistry.getDefaultRegistry().register(new Provider("static"));
+            NameResolverRegistry.getDefaultRegistry().register(new Provider("file"));
+            registered = true;
+        }
+    }
+
+    // Current backend list for a static:/// or file:/// target
+    public static List<String> list(String target) {
+        URI uri = URI.create(target);
+        if ("static".equals(uri.getScheme())) {
+            return parse(uri.getPath().substring(1).replace(',', '\n'));
+        }
+        if ("file".equals(uri.getScheme())) {
+            try {
+                return parse(Files.readString(Path.of(uri)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        throw new IllegalArgumentException("Not a static:/// or file:/// target: " + target);
+    }
+
+    private static List<String> parse(String content) {
+        List<String> targets = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            String entry = line.strip();
+            if (!entry.isEmpty() && !entry.startsWith("#")) {
+                targets.add(entry);
+            }
+        }
+        return targets;
+    }
+
+    private static final class Provider extends NameResolverProvider {
+
+        private final String scheme;
+
+        Provider(String scheme) {
+            this.scheme = scheme;
+        }
+
+        @Override
+        public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+            if (!scheme.equals(targetUri.getScheme())) {
+                return null;
+            }
+            String target = targetUri.toString();
+            long refresh = "file".equals(scheme) ? FILE_REFRESH_MILLIS : 0;
+            String authority = "file".equals(scheme) ? "localhost" : list(target).get(0);
+            return new AddressListNameResolver(authority, () -> list(target), refresh, args);
+        }
+
+        @Override
+        public String getDefaultScheme() {
+            return scheme;
+        }
+
+        @Override
+        protected boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        protected int priority() {
+            return 5;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+// CallAttemptMetrics.java - counts hedges and retries that decided a call
+package com.example.grpc.client;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sits above the channel's retry/hedging layer and reads the
+ * {@code grpc-previous-rpc-attempts} header gRPC puts on the committed
+ * attempt's response. A non-zero value on a hedged method means a hedge
+ * answered first; on any other method it means the call needed a retry.
+ * Comparing hedges won against calls shows whether hedging earns its extra
+ * load.
+ */
+public class CallAttemptMetrics implements ClientInterceptor {
+
+    private static final Metadata.Key<String> PREVIOUS_ATTEMPTS =
+            Metadata.Key.of("grpc-previous-rpc-attempts", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final UserServiceConfig serviceConfig;
+    private final LongAdder hedgedCalls = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+    private final LongAdder retriedCalls = new LongAdder();
+    private final LongAdder retryAttempts = new LongAdder();
+
+    public CallAttemptMetrics(UserServiceConfig serviceConfig) {
+        this.serviceConfig = serviceConfig;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        boolean hedged = serviceConfig.isHedged(method.getBareMethodName());
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    private int previousAttempts;
+
+                    @Override
+                    public void onHeaders(Metadata headers) {
+                        previousAttempts = parse(headers.get(PREVIOUS_ATTEMPTS));
+                        super.onHeaders(headers);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        // Trailers-only responses carry the header in the trailers
+                        int attempts = Math.max(previousAttempts, parse(trailers.get(PREVIOUS_ATTEMPTS)));
+                        record(hedged, attempts);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    private static int parse(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void record(boolean hedged, int previousAttempts) {
+        if (hedged) {
+            hedgedCalls.increment();
+            if (previousAttempts > 0) {
+                hedgesWon.increment();
+            }
+        } else if (previousAttempts > 0) {
+            retriedCalls.increment();
+            retryAttempts.add(previousAttempts);
+        }
+    }
+
+    // Calls to hedged methods, hedged or not
+    public long getHedgedCalls() {
+        return hedgedCalls.sum();
+    }
+
+    // Hedged-method calls answered by a hedge rather than the first attempt
+    public long getHedgesWon() {
+        return hedgesWon.sum();
+    }
+
+    public long getRetriedCalls() {
+        return retriedCalls.sum();
+    }
+
+    public long getRetryAttempts() {
+        return retryAttempts.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hedgedCalls=%d hedgesWon=%d retriedCalls=%d retryAttempts=%d",
+                getHedgedCalls(), getHedgesWon(), getRetriedCalls(), getRetryAttempts());
+    }
+}
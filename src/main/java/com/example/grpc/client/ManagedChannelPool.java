@@ -0,0 +1,179 @@
+// ManagedChannelPool.java - spreads calls over several connections
+package com.example.grpc.client;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link ManagedChannel} backed by several independent channels, each with
+ * its own HTTP/2 connection and event loop. Every new call goes to the
+ * channel with the fewest outstanding calls, so a single busy client is no
+ * longer capped by one connection's MAX_CONCURRENT_STREAMS or one event loop.
+ *
+ * <p>When the channels point at different replicas, each can be given a
+ * weight (e.g. from server-reported load); selection then minimises
+ * {@code (outstanding + 1) / weight}, so a channel with twice the weight
+ * carries about twice the concurrent calls. A weight of 0 takes the channel
+ * out of rotation unless every channel is at 0.
+ */
+public class ManagedChannelPool extends ManagedChannel {
+
+    private final ManagedChannel[] channels;
+    private final AtomicInteger[] outstanding;
+    // Double bits, so weights can be updated from any thread
+    private final AtomicLongArray weights;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile CallListener callListener;
+
+    // Told which channel served each call and how it ended, e.g. to read
+    // load reports from the trailers
+    public interface CallListener {
+        void onClose(int index, Status status, Metadata trailers);
+    }
+
+    public ManagedChannelPool(List<ManagedChannel> channels) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("Channel pool needs at least one channel");
+        }
+        this.channels = channels.toArray(new ManagedChannel[0]);
+        this.outstanding = new AtomicInteger[this.channels.length];
+        this.weights = new AtomicLongArray(this.channels.length);
+        for (int i = 0; i < outstanding.length; i++) {
+            outstanding[i] = new AtomicInteger();
+            weights.set(i, Double.doubleToRawLongBits(1.0));
+        }
+    }
+
+    public int size() {
+        return channels.length;
+    }
+
+    public void setWeight(int index, double weight) {
+        weights.set(index, Double.doubleToRawLongBits(Math.max(weight, 0.0)));
+    }
+
+    public double getWeight(int index) {
+        return Double.longBitsToDouble(weights.get(index));
+    }
+
+    public int getOutstanding(int index) {
+        return outstanding[index].get();
+    }
+
+    public ManagedChannel getChannel(int index) {
+        return channels[index];
+    }
+
+    public void setCallListener(CallListener callListener) {
+        this.callListener = callListener;
+    }
+
+    // Weighted least-outstanding-requests selection; the scan starts at a
+    // rotating offset so ties are broken round robin instead of favouring 0
+    private int select() {
+        int start = Math.floorMod(next.getAndIncrement(), channels.length);
+        int best = start;
+        double bestScore = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < channels.length; i++) {
+            int candidate = (start + i) % channels.length;
+            double weight = getWeight(candidate);
+            if (weight <= 0) {
+                continue;
+            }
+            double score = (outstanding[candidate].get() + 1) / weight;
+            if (score < bestScore) {
+                best = candidate;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+        int index = select();
+        AtomicInteger counter = outstanding[index];
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(channels[index].newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                counter.incrementAndGet();
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        counter.decrementAndGet();
+                        CallListener listener = callListener;
+                        if (listener != null) {
+                            listener.onClose(index, status, trailers);
+                        }
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    @Override
+    public String authority() {
+        return channels[0].authority();
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        for (ManagedChannel channel : channels) {
+            channel.shutdown();
+        }
+        return this;
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        for (ManagedChannel channel : channels) {
+            channel.shutdownNow();
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (ManagedChannel channel : channels) {
+            if (!channel.isShutdown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (ManagedChannel channel : channels) {
+            if (!channel.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ManagedChannel channel : channels) {
+            long remaining = deadline - System.nanoTime();
+            if (!channel.awaitTermination(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
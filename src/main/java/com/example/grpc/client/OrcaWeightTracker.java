@@ -0,0 +1,161 @@
+// OrcaWeightTracker.java - turns server load reports into balancing weights
+package com.example.grpc.client;
+
+import com.example.grpc.service.OrcaLoadReportingInterceptor;
+import com.github.xds.data.orca.v3.OrcaLoadReport;
+import com.github.xds.service.orca.v3.OpenRcaServiceGrpc;
+import com.github.xds.service.orca.v3.OrcaLoadReportRequest;
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds ORCA load reports from each replica into {@link ManagedChannelPool}
+ * weights. Reports arrive both in per-call trailers and on an out-of-band
+ * OpenRcaService stream per replica, so idle replicas keep reporting too.
+ *
+ * <p>As in gRPC's weighted_round_robin policy, a replica's weight is its
+ * estimated capacity, {@code rps / utilization}, where utilization is the
+ * highest of CPU, application and JDBC pool utilization. Error rate counts
+ * against it, and replicas without a usable report yet get the mean weight
+ * of the others. So do replicas whose last report is more than
+ * {@value #STALE_AFTER_INTERVALS} report intervals old, rather than keeping
+ * the capacity they had before they went quiet.
+ */
+public class OrcaWeightTracker implements AutoCloseable {
+
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+    private static final int STALE_AFTER_INTERVALS = 3;
+    // Utilization floor, so a nearly idle replica doesn't get an unbounded weight
+    private static final double MIN_UTILIZATION = 0.01;
+    // How much each error per second counts against capacity, relative to utilization
+    private static final double ERROR_PENALTY = 1.0;
+
+    private final ManagedChannelPool pool;
+    private final Duration reportInterval;
+    private final double[] capacities;
+    private final long[] reportedAt;
+    private final ScheduledExecutorService scheduler;
+    // The OOB streams run in this context, so close() can end them
+    private final Context.CancellableContext watches = Context.current().withCancellation();
+    private volatile boolean closed;
+
+    public OrcaWeightTracker(ManagedChannelPool pool, Duration reportInterval) {
+        this.pool = pool;
+        this.reportInterval = reportInterval;
+        this.capacities = new double[pool.size()];
+        this.reportedAt = new long[pool.size()];
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "orca-weight-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.setCallListener(this::onCallClosed);
+        for (int i = 0; i < pool.size(); i++) {
+            watch(i);
+        }
+        long intervalMillis = Math.max(1, reportInterval.toMillis());
+        scheduler.scheduleAtFixedRate(this::expireStale, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void onCallClosed(int index, Status status, Metadata trailers) {
+        OrcaLoadReport report = trailers.get(OrcaLoadReportingInterceptor.ORCA_TRAILER_KEY);
+        if (report != null) {
+            onReport(index, report);
+        }
+    }
+
+    private void watch(int index) {
+        OrcaLoadReportRequest request = OrcaLoadReportRequest.newBuilder()
+                .setReportInterval(com.google.protobuf.Duration.newBuilder()
+                        .setSeconds(reportInterval.getSeconds())
+                        .setNanos(reportInterval.getNano()))
+                .build();
+        watches.run(() -> OpenRcaServiceGrpc.newStub(pool.getChannel(index)).streamCoreMetrics(request,
+                new StreamObserver<OrcaLoadReport>() {
+                    @Override
+                    public void onNext(OrcaLoadReport report) {
+                        onReport(index, report);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        rewatch(index);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        rewatch(index);
+                    }
+                }));
+    }
+
+    private void rewatch(int index) {
+        if (!closed) {
+            scheduler.schedule(() -> watch(index), RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void onReport(int index, OrcaLoadReport report) {
+        double utilization = Math.max(report.getCpuUtilization(), report.getApplicationUtilization());
+        utilization = Math.max(utilization, report.getUtilizationOrDefault("jdbc_pool", 0));
+        double rps = report.getRpsFractional();
+        if (rps > 0 && utilization > 0) {
+            double penalty = ERROR_PENALTY * report.getEps() / rps;
+            capacities[index] = rps / (Math.max(utilization, MIN_UTILIZATION) + penalty);
+        }
+        // Any report shows the replica is still there, even an idle one's
+        reportedAt[index] = System.nanoTime();
+        applyWeights();
+    }
+
+    // A replica that stopped reporting may be overloaded, partitioned or
+    // gone; its old capacity says nothing about it any more
+    synchronized void expireStale() {
+        long staleNanos = reportInterval.toNanos() * STALE_AFTER_INTERVALS;
+        long now = System.nanoTime();
+        boolean expired = false;
+        for (int i = 0; i < capacities.length; i++) {
+            if (capacities[i] > 0 && now - reportedAt[i] > staleNanos) {
+                capacities[i] = 0;
+                expired = true;
+            }
+        }
+        if (expired) {
+            applyWeights();
+        }
+    }
+
+    // Caller must hold the lock
+    private void applyWeights() {
+        double sum = 0;
+        int known = 0;
+        for (double capacity : capacities) {
+            if (capacity > 0) {
+                sum += capacity;
+                known++;
+            }
+        }
+        double mean = known == 0 ? 1.0 : sum / known;
+        // Normalised so an average replica has weight 1
+        for (int i = 0; i < capacities.length; i++) {
+            pool.setWeight(i, capacities[i] > 0 ? capacities[i] / mean : 1.0);
+        }
+    }
+
+    // Ends the OOB streams too; a channel can outlive its tracker when it
+    // moves to a new pool
+    @Override
+    public void close() {
+        closed = true;
+        pool.setCallListener(null);
+        scheduler.shutdownNow();
+        watches.cancel(null);
+    }
+}
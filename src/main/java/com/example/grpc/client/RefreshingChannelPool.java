@@ -0,0 +1,150 @@
+// RefreshingChannelPool.java - a weighted channel pool that follows the replica list
+package com.example.grpc.client;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The WEIGHTED_LEAST_REQUEST channel: a {@link ManagedChannelPool} with one
+ * channel per replica of a static:/// or file:/// target, weighted by an
+ * {@link OrcaWeightTracker}. A file target is re-read as often as the name
+ * resolver re-reads it for ROUND_ROBIN, and when the replica list changes a
+ * new pool and tracker replace the current ones. Channels to replicas that
+ * are still listed move to the new pool as they are; channels to replicas
+ * that were removed are shut down gracefully, so their calls can finish. A
+ * file that can't be read or lists no replicas leaves the pool as it is.
+ */
+public class RefreshingChannelPool extends ManagedChannel {
+
+    private final String target;
+    private final Function<String, ManagedChannel> channelFactory;
+    private final Duration loadReportInterval;
+    private final ScheduledExecutorService refresher;
+
+    // Replaced as a whole; written under this
+    private volatile Replicas current;
+    private boolean shutdown;
+
+    private record Replicas(List<String> backends, ManagedChannelPool pool, OrcaWeightTracker tracker) {
+    }
+
+    public RefreshingChannelPool(String target, Function<String, ManagedChannel> channelFactory,
+                                 Duration loadReportInterval) {
+        this.target = target;
+        this.channelFactory = channelFactory;
+        this.loadReportInterval = loadReportInterval;
+        this.current = build(backends(), null);
+        if ("file".equals(URI.create(target).getScheme())) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "replica-list-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, BackendTargets.FILE_REFRESH_MILLIS,
+                    BackendTargets.FILE_REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            refresher = null;
+        }
+    }
+
+    public ManagedChannelPool getPool() {
+        return current.pool;
+    }
+
+    // Re-reads the replica list and swaps in a new pool if it changed
+    public synchronized void refresh() {
+        if (shutdown) {
+            return;
+        }
+        List<String> backends;
+        try {
+            backends = backends();
+        } catch (RuntimeException e) {
+            return;
+        }
+        Replicas old = current;
+        if (backends.isEmpty() || backends.equals(old.backends)) {
+            return;
+        }
+        current = build(backends, old);
+        old.tracker.close();
+        for (int i = 0; i < old.backends.size(); i++) {
+            if (!backends.contains(old.backends.get(i))) {
+                old.pool.getChannel(i).shutdown();
+            }
+        }
+    }
+
+    private List<String> backends() {
+        return List.copyOf(new LinkedHashSet<>(BackendTargets.list(target)));
+    }
+
+    private Replicas build(List<String> backends, Replicas previous) {
+        List<ManagedChannel> channels = new ArrayList<>();
+        for (String backend : backends) {
+            int kept = previous == null ? -1 : previous.backends.indexOf(backend);
+            channels.add(kept >= 0 ? previous.pool.getChannel(kept) : channelFactory.apply(backend));
+        }
+        ManagedChannelPool pool = new ManagedChannelPool(channels);
+        return new Replicas(backends, pool, new OrcaWeightTracker(pool, loadReportInterval));
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+        return current.pool.newCall(method, callOptions);
+    }
+
+    @Override
+    public String authority() {
+        return current.pool.authority();
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        stop().pool.shutdown();
+        return this;
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        stop().pool.shutdownNow();
+        return this;
+    }
+
+    private synchronized Replicas stop() {
+        shutdown = true;
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        current.tracker.close();
+        return current;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return current.pool.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return current.pool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return current.pool.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,133 @@
+// StreamUsersPublisher.java - StreamUsers as a backpressured Flow.Publisher
+package com.example.grpc.client;
+
+import com.example.grpc.user.Empty;
+import com.example.grpc.user.UserResponse;
+import com.example.grpc.user.UserServiceGrpc;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cold publisher: every subscription starts its own StreamUsers call with
+ * automatic inbound flow control disabled. Messages are only pulled from the
+ * transport as the subscriber calls {@link Flow.Subscription#request}, so a
+ * slow consumer holds back the HTTP/2 window and the server stops sending
+ * instead of the client buffering without bound.
+ */
+public class StreamUsersPublisher implements Flow.Publisher<UserResponse> {
+
+    private final UserServiceGrpc.UserServiceStub asyncStub;
+
+    public StreamUsersPublisher(UserServiceGrpc.UserServiceStub asyncStub) {
+        this.asyncStub = asyncStub;
+    }
+
+    // onSubscribe comes first, so no other signal can reach the subscriber
+    // before it; demand requested from inside onSubscribe is carried into the
+    // call as its initial request
+    @Override
+    public void subscribe(Flow.Subscriber<? super UserResponse> subscriber) {
+        CallSubscription subscription = new CallSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        if (!subscription.done.get()) {
+            asyncStub.streamUsers(Empty.newBuilder().build(), subscription);
+            subscription.afterStart();
+        }
+    }
+
+    private static final class CallSubscription
+            implements Flow.Subscription, ClientResponseObserver<Empty, UserResponse> {
+
+        private final Flow.Subscriber<? super UserResponse> subscriber;
+        private final AtomicBoolean done = new AtomicBoolean();
+        // Guarded by this
+        private ClientCallStreamObserver<Empty> call;
+        private long demandBeforeStart;
+
+        CallSubscription(Flow.Subscriber<? super UserResponse> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<Empty> requestStream) {
+            // Nothing is delivered until the subscriber asks for it
+            synchronized (this) {
+                requestStream.disableAutoRequestWithInitial(toInt(demandBeforeStart));
+                this.call = requestStream;
+            }
+        }
+
+        // A cancel that raced with starting the call found no call to cancel
+        void afterStart() {
+            if (done.get()) {
+                startedCall().cancel("Subscriber cancelled", null);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (done.compareAndSet(false, true)) {
+                    ClientCallStreamObserver<Empty> started = startedCall();
+                    if (started != null) {
+                        started.cancel("Invalid demand", null);
+                    }
+                    subscriber.onError(new IllegalArgumentException("Subscription request must be positive, got " + n));
+                }
+                return;
+            }
+            ClientCallStreamObserver<Empty> started;
+            synchronized (this) {
+                if (call == null) {
+                    demandBeforeStart = demandBeforeStart + n < 0 ? Long.MAX_VALUE : demandBeforeStart + n;
+                    return;
+                }
+                started = call;
+            }
+            started.request(toInt(n));
+        }
+
+        @Override
+        public void cancel() {
+            if (done.compareAndSet(false, true)) {
+                ClientCallStreamObserver<Empty> started = startedCall();
+                if (started != null) {
+                    started.cancel("Subscriber cancelled", null);
+                }
+            }
+        }
+
+        private synchronized ClientCallStreamObserver<Empty> startedCall() {
+            return call;
+        }
+
+        // gRPC counts demand in ints; Long.MAX_VALUE ("unbounded") is capped
+        private static int toInt(long demand) {
+            return (int) Math.min(demand, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(UserResponse user) {
+            if (!done.get()) {
+                subscriber.onNext(user);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done.compareAndSet(false, true)) {
+                subscriber.onError(t);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            if (done.compareAndSet(false, true)) {
+                subscriber.onComplete();
+            }
+        }
+    }
+}
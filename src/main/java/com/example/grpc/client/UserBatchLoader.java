@@ -0,0 +1,146 @@
+// UserBatchLoader.java - coalesces concurrent GetUser calls into GetUsers
+package com.example.grpc.client;
+
+import com.example.grpc.user.UserListResponse;
+import com.example.grpc.user.UserResponse;
+import io.grpc.Status;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * DataLoader-style batching for point reads. Ids requested within
+ * {@code window} of the first pending one (or until {@code maxBatchSize}
+ * distinct ids are pending) are sent as one GetUsers call. Duplicate ids in
+ * a batch share a single future. Ids the server doesn't return complete with
+ * NOT_FOUND, the same status an individual GetUser would produce.
+ *
+ * <p>Batches are sent from the loader's single timer thread, so
+ * {@code batchFetch} must not block: a fetch that can't start (for example
+ * because the client's in-flight cap is reached) should return a failed
+ * future, which fails every load in that batch.
+ */
+public class UserBatchLoader implements AutoCloseable {
+
+    private final Function<Collection<Long>, CompletableFuture<UserListResponse>> batchFetch;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+
+    // Guarded by this
+    private Map<Long, CompletableFuture<UserResponse>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledDispatch;
+    private boolean closed;
+
+    public UserBatchLoader(Function<Collection<Long>, CompletableFuture<UserListResponse>> batchFetch,
+                           Duration window, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.batchFetch = batchFetch;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-batch-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<UserResponse> load(long id) {
+        Map<Long, CompletableFuture<UserResponse>> fullBatch = null;
+        CompletableFuture<UserResponse> future;
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("UserBatchLoader is closed"));
+            }
+            future = pending.get(id);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(id, future);
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = takePending();
+            } else if (pending.size() == 1) {
+                scheduledDispatch = scheduler.schedule(this::dispatchPending, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            dispatch(fullBatch);
+        }
+        return future;
+    }
+
+    private void dispatchPending() {
+        Map<Long, CompletableFuture<UserResponse>> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    // Caller must hold the lock
+    private Map<Long, CompletableFuture<UserResponse>> takePending() {
+        Map<Long, CompletableFuture<UserResponse>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledDispatch != null) {
+            scheduledDispatch.cancel(false);
+            scheduledDispatch = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<Long, CompletableFuture<UserResponse>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(batch.keySet());
+        CompletableFuture<UserListResponse> response;
+        try {
+            response = batchFetch.apply(ids);
+        } catch (RuntimeException e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+            return;
+        }
+        response.whenComplete((list, t) -> {
+            if (t != null) {
+                batch.values().forEach(future -> future.completeExceptionally(t));
+                return;
+            }
+            for (UserResponse user : list.getUsersList()) {
+                CompletableFuture<UserResponse> future = batch.get(user.getId());
+                if (future != null) {
+                    future.complete(user);
+                }
+            }
+            batch.forEach((id, future) -> {
+                if (!future.isDone()) {
+                    future.completeExceptionally(Status.NOT_FOUND
+                            .withDescription("User not found with id: " + id)
+                            .asRuntimeException());
+                }
+            });
+        });
+    }
+
+    // Sends whatever is pending and stops the dispatch timer; later loads fail
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        dispatchPending();
+        scheduler.shutdown();
+    }
+}
@@ -2,32 +2,201 @@
 package com.example.grpc.client;
 
 import com.example.grpc.user.*;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class UserGrpcClient {
+// Default cap on outstanding future-based calls
+public static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+// How often replicas push out-of-band load reports
+private static final Duration LOAD_REPORT_INTERVAL = Duration.ofSeconds(1);
+
 private final ManagedChannel channel;
 private final UserServiceGrpc.UserServiceBlockingStub blockingStub;
 private final UserServiceGrpc.UserServiceStub asyncStub;
+private final UserServiceGrpc.UserServiceFutureStub futureStub;
+private final Semaphore inFlight;
+private volatile UserBatchLoader batchLoader;
+private volatile UserNearCache nearCache;
+private final CallAttemptMetrics callAttemptMetrics;
 
 public UserGrpcClient(String host, int port) {
+    this(host, port, DEFAULT_MAX_IN_FLIGHT);
+}
+
+public UserGrpcClient(String host, int port, int maxInFlight) {
+    this(host, port, maxInFlight, 1);
+}
+
+// channelCount > 1 opens that many connections and spreads calls across them
+public UserGrpcClient(String host, int port, int maxInFlight, int channelCount) {
+    this(newPooledChannel(host, port, channelCount, UserServiceConfig.DEFAULT), maxInFlight,
+            UserServiceConfig.DEFAULT);
+}
+
+// Connects to several replicas directly, without a proxy in front. The target
+// is static:///h1:p1,h2:p2 or file:///path (see BackendTargets), or any
+// target gRPC itself resolves when using ROUND_ROBIN.
+public UserGrpcClient(String target, LoadBalancing loadBalancing, int maxInFlight) {
+    this(target, loadBalancing, maxInFlight, UserServiceConfig.DEFAULT);
+}
+
+public UserGrpcClient(String target, LoadBalancing loadBalancing, int maxInFlight, UserServiceConfig serviceConfig) {
+    this(loadBalancing == LoadBalancing.WEIGHTED_LEAST_REQUEST ? serviceConfig.withoutHedging() : serviceConfig,
+            target, loadBalancing, maxInFlight);
+}
+
+private UserGrpcClient(UserServiceConfig serviceConfig, String target, LoadBalancing loadBalancing, int maxInFlight) {
+    this(newBalancedChannel(target, loadBalancing, serviceConfig), maxInFlight, serviceConfig);
+}
+
+private UserGrpcClient(ManagedChannel channel, int maxInFlight, UserServiceConfig serviceConfig) {
+    this.channel = channel;
+    this.callAttemptMetrics = new CallAttemptMetrics(serviceConfig);
+    
+    // Stubs go through the metrics interceptor, above the retry/hedging layer
+    Channel stubChannel = ClientInterceptors.intercept(channel, callAttemptMetrics);
+    
+    // Create blocking, async and future stubs
+    this.blockingStub = UserServiceGrpc.newBlockingStub(stubChannel);
+    this.asyncStub = UserServiceGrpc.newStub(stubChannel);
+    this.futureStub = UserServiceGrpc.newFutureStub(stubChannel);
+    this.inFlight = new Semaphore(maxInFlight);
+}
+
+public enum LoadBalancing {
+    // gRPC's round_robin policy over every resolved address
+    ROUND_ROBIN,
+    // One channel per replica, picked by outstanding calls weighted by the
+    // capacity each replica reports over ORCA. Point reads aren't hedged in
+    // this mode: every attempt of a call stays on the replica's channel it
+    // was picked for, so a hedge would wait on the same slow replica.
+    WEIGHTED_LEAST_REQUEST
+}
+
+private static ManagedChannel newChannel(String host, int port, UserServiceConfig serviceConfig) {
     // Create a channel to connect to the server
-    this.channel = ManagedChannelBuilder
+    return ManagedChannelBuilder
             .forAddress(host, port)
             .usePlaintext() // Disable TLS for development
+            .defaultServiceConfig(serviceConfig.toServiceConfig())
+            .enableRetry()
             .build();
-    
-    // Create blocking and async stubs
-    this.blockingStub = UserServiceGrpc.newBlockingStub(channel);
-    this.asyncStub = UserServiceGrpc.newStub(channel);
+}
+
+private static ManagedChannel newPooledChannel(String host, int port, int channelCount, UserServiceConfig serviceConfig) {
+    if (channelCount <= 1) {
+        return newChannel(host, port, serviceConfig);
+    }
+    List<ManagedChannel> channels = new ArrayList<>();
+    for (int i = 0; i < channelCount; i++) {
+        channels.add(newChannel(host, port, serviceConfig));
+    }
+    return new ManagedChannelPool(channels);
+}
+
+private static ManagedChannel newBalancedChannel(String target, LoadBalancing loadBalancing,
+                                                 UserServiceConfig serviceConfig) {
+    if (loadBalancing == LoadBalancing.ROUND_ROBIN) {
+        BackendTargets.register();
+        // Hedges are picked independently, so they land on other replicas
+        return ManagedChannelBuilder
+                .forTarget(target)
+                .defaultLoadBalancingPolicy("round_robin")
+                .usePlaintext()
+                .defaultServiceConfig(serviceConfig.toServiceConfig())
+                .enableRetry()
+                .build();
+    }
+    // Each replica gets its own channel, weighted by its ORCA reports, and
+    // the pool follows later edits to a targets file. The config comes
+    // without hedging (see WEIGHTED_LEAST_REQUEST).
+    return new RefreshingChannelPool(target, backend -> {
+        InetSocketAddress address = AddressListNameResolver.parseAddress(backend);
+        return newChannel(address.getHostString(), address.getPort(), serviceConfig);
+    }, LOAD_REPORT_INTERVAL);
+}
+
+// How often hedges and retries decided the outcome of a call
+public CallAttemptMetrics getCallAttemptMetrics() {
+    return callAttemptMetrics;
+}
+
+// The pool behind WEIGHTED_LEAST_REQUEST (the current one, which changes
+// with the replica list) or channelCount > 1, otherwise null
+public ManagedChannelPool getChannelPool() {
+    if (channel instanceof RefreshingChannelPool) {
+        return ((RefreshingChannelPool) channel).getPool();
+    }
+    return channel instanceof ManagedChannelPool ? (ManagedChannelPool) channel : null;
+}
+
+// Route getUser / getUserAsync through a loader that coalesces concurrent
+// reads into GetUsers calls; callers keep using the same methods
+public void enableGetUserBatching(Duration window, int maxBatchSize) {
+    this.batchLoader = new UserBatchLoader(this::getUsersAsync, window, maxBatchSize);
+}
+
+// Serve repeat getUser reads from a local cache kept coherent by the
+// server's invalidation stream
+public void enableNearCache(int maxEntries, Duration ttl) {
+    this.nearCache = new UserNearCache(asyncStub, maxEntries, ttl);
+}
+
+public UserNearCache getNearCache() {
+    return nearCache;
 }
 
 // Blocking call to get a user
 public UserResponse getUser(long id) {
+    UserNearCache cache = nearCache;
+    if (cache == null) {
+        return fetchUser(id);
+    }
+    UserResponse cached = cache.get(id);
+    if (cached != null) {
+        return cached;
+    }
+    long stamp = cache.stamp();
+    UserResponse user = fetchUser(id);
+    cache.put(user, stamp);
+    return user;
+}
+
+private UserResponse fetchUser(long id) {
+    UserBatchLoader loader = batchLoader;
+    if (loader != null) {
+        try {
+            return loader.load(id).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
     GetUserRequest request = GetUserRequest.newBuilder()
             .setId(id)
             .build();
@@ -35,6 +204,15 @@ public UserResponse getUser(long id) {
     return blockingStub.getUser(request);
 }
 
+// Blocking call to get several users in one round trip
+public UserListResponse getUsers(Collection<Long> ids) {
+    GetUsersRequest request = GetUsersRequest.newBuilder()
+            .addAllIds(ids)
+            .build();
+    
+    return blockingStub.getUsers(request);
+}
+
 // Blocking call to get all users
 public UserListResponse getAllUsers() {
     Empty request = Empty.newBuilder().build();
@@ -61,6 +239,7 @@ public UserResponse updateUser(long id, String name, String email, String phone)
             .setPhone(phone)
             .build();
     
+    invalidateCached(id);
     return blockingStub.updateUser(request);
 }
 
@@ -70,9 +249,150 @@ public void deleteUser(long id) {
             .setId(id)
             .build();
     
+    invalidateCached(id);
     blockingStub.deleteUser(request);
 }
 
+// Future-based calls. These never block, so a single thread can pipeline
+// many RPCs over the channel's HTTP/2 connection, and they are safe to issue
+// from another call's callback. Once maxInFlight calls are outstanding, new
+// ones fail straight away with RESOURCE_EXHAUSTED.
+
+public CompletableFuture<UserResponse> getUserAsync(long id) {
+    UserNearCache cache = nearCache;
+    if (cache == null) {
+        return fetchUserAsync(id);
+    }
+    UserResponse cached = cache.get(id);
+    if (cached != null) {
+        return CompletableFuture.completedFuture(cached);
+    }
+    long stamp = cache.stamp();
+    return fetchUserAsync(id).thenApply(user -> {
+        cache.put(user, stamp);
+        return user;
+    });
+}
+
+private CompletableFuture<UserResponse> fetchUserAsync(long id) {
+    UserBatchLoader loader = batchLoader;
+    if (loader != null) {
+        return loader.load(id);
+    }
+    
+    GetUserRequest request = GetUserRequest.newBuilder()
+            .setId(id)
+            .build();
+    
+    return callAsync(() -> futureStub.getUser(request));
+}
+
+public CompletableFuture<UserListResponse> getUsersAsync(Collection<Long> ids) {
+    GetUsersRequest request = GetUsersRequest.newBuilder()
+            .addAllIds(ids)
+            .build();
+    
+    return callAsync(() -> futureStub.getUsers(request));
+}
+
+public CompletableFuture<UserListResponse> getAllUsersAsync() {
+    Empty request = Empty.newBuilder().build();
+    return callAsync(() -> futureStub.getAllUsers(request));
+}
+
+public CompletableFuture<UserResponse> createUserAsync(String name, String email, String phone) {
+    CreateUserRequest request = CreateUserRequest.newBuilder()
+            .setName(name)
+            .setEmail(email)
+            .setPhone(phone)
+            .build();
+    
+    return callAsync(() -> futureStub.createUser(request));
+}
+
+public CompletableFuture<UserResponse> updateUserAsync(long id, String name, String email, String phone) {
+    UpdateUserRequest request = UpdateUserRequest.newBuilder()
+            .setId(id)
+            .setName(name)
+            .setEmail(email)
+            .setPhone(phone)
+            .build();
+    
+    invalidateCached(id);
+    return callAsync(() -> futureStub.updateUser(request));
+}
+
+public CompletableFuture<Void> deleteUserAsync(long id) {
+    DeleteUserRequest request = DeleteUserRequest.newBuilder()
+            .setId(id)
+            .build();
+    
+    invalidateCached(id);
+    return callAsync(() -> futureStub.deleteUser(request)).thenApply(empty -> null);
+}
+
+// Our own writes drop the entry right away rather than waiting for the
+// server's invalidation to come back
+private void invalidateCached(long id) {
+    UserNearCache cache = nearCache;
+    if (cache != null) {
+        cache.invalidate(id);
+    }
+}
+
+// Number of future-based calls that can still be started
+public int availableInFlightPermits() {
+    return inFlight.availablePermits();
+}
+
+// Takes an in-flight permit, starts the call and bridges the gRPC
+// ListenableFuture to a CompletableFuture. Cancelling the returned future
+// cancels the RPC. Waiting for a permit here could deadlock a callback
+// running on the very executor that would release one, so a full cap fails
+// the call instead.
+private <T> CompletableFuture<T> callAsync(Supplier<ListenableFuture<T>> call) {
+    if (!inFlight.tryAcquire()) {
+        return CompletableFuture.failedFuture(Status.RESOURCE_EXHAUSTED
+                .withDescription("Too many in-flight calls")
+                .asRuntimeException());
+    }
+    
+    ListenableFuture<T> future;
+    try {
+        future = call.get();
+    } catch (RuntimeException e) {
+        inFlight.release();
+        return CompletableFuture.failedFuture(e);
+    }
+    
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Futures.addCallback(future, new FutureCallback<T>() {
+        @Override
+        public void onSuccess(T value) {
+            inFlight.release();
+            result.complete(value);
+        }
+        
+        @Override
+        public void onFailure(Throwable t) {
+            inFlight.release();
+            result.completeExceptionally(t);
+        }
+    }, MoreExecutors.directExecutor());
+    result.whenComplete((value, t) -> {
+        if (result.isCancelled()) {
+            future.cancel(true);
+        }
+    });
+    return result;
+}
+
+// Streams all users to a Flow.Subscriber; rows are only pulled from the
+// server as fast as the subscriber requests them
+public Flow.Publisher<UserResponse> streamUsersPublisher() {
+    return new StreamUsersPublisher(asyncStub);
+}
+
 // Async call with streaming
 public void streamUsers() throws InterruptedException {
     CountDownLatch latch = new CountDownLatch(1);
@@ -104,6 +424,14 @@ public void streamUsers() throws InterruptedException {
 
 // Shutdown the channel
 public void shutdown() throws InterruptedException {
+    UserBatchLoader loader = batchLoader;
+    if (loader != null) {
+        loader.close();
+    }
+    UserNearCache cache = nearCache;
+    if (cache != null) {
+        cache.close();
+    }
     channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
 }
 
@@ -128,6 +456,14 @@ public static void main(String[] args) throws Exception {
         UserListResponse allUsers = client.getAllUsers();
         System.out.println("Total users: " + allUsers.getUsersCount());
         
+        // Pipeline reads from this thread without waiting on each one
+        List<CompletableFuture<UserResponse>> reads = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            reads.add(client.getUserAsync(newUser.getId()));
+        }
+        CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).join();
+        System.out.println("Pipelined reads completed: " + reads.size());
+        
         // Stream users
         client.streamUsers();
         
@@ -0,0 +1,161 @@
+// UserNearCache.java - bounded client-side cache kept coherent by the server
+package com.example.grpc.client;
+
+import com.example.grpc.user.Empty;
+import com.example.grpc.user.UserInvalidation;
+import com.example.grpc.user.UserResponse;
+import com.example.grpc.user.UserServiceGrpc;
+import io.grpc.stub.StreamObserver;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LRU cache of {@link UserResponse} by id, invalidated by the server's
+ * WatchInvalidations stream. The cache only serves and accepts entries while
+ * the stream is up; every (re)connect starts from an empty cache, and the TTL
+ * bounds staleness if an invalidation is ever lost.
+ *
+ * <p>A value fetched across an invalidation may already be stale, so
+ * {@link #put} only accepts it if no invalidation arrived since the caller
+ * took {@link #stamp()} before fetching.
+ */
+public class UserNearCache implements AutoCloseable {
+
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private final UserServiceGrpc.UserServiceStub asyncStub;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final ScheduledExecutorService scheduler;
+
+    // Guarded by this
+    private final LinkedHashMap<Long, Entry> entries;
+    private long invalidations;
+    private boolean connected;
+    private boolean closed;
+
+    private long hits;
+    private long misses;
+
+    private record Entry(UserResponse user, long expiresAt) {
+    }
+
+    public UserNearCache(UserServiceGrpc.UserServiceStub asyncStub, int maxEntries, Duration ttl) {
+        this.asyncStub = asyncStub;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > UserNearCache.this.maxEntries;
+            }
+        };
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-near-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        subscribe();
+    }
+
+    public synchronized UserResponse get(long id) {
+        Entry entry = connected ? entries.get(id) : null;
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt() - System.nanoTime() < 0) {
+            entries.remove(id);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.user();
+    }
+
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    public synchronized void put(UserResponse user, long stamp) {
+        if (connected && stamp == invalidations) {
+            entries.put(user.getId(), new Entry(user, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    public synchronized void invalidate(long id) {
+        invalidations++;
+        entries.remove(id);
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void subscribe() {
+        asyncStub.watchInvalidations(Empty.newBuilder().build(), new StreamObserver<UserInvalidation>() {
+            @Override
+            public void onNext(UserInvalidation invalidation) {
+                if (invalidation.getFlushAll()) {
+                    synchronized (UserNearCache.this) {
+                        invalidateAll();
+                        connected = true;
+                    }
+                } else {
+                    invalidate(invalidation.getId());
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                disconnected();
+            }
+
+            @Override
+            public void onCompleted() {
+                disconnected();
+            }
+        });
+    }
+
+    // Stop serving until the stream is back; the reconnect flushes everything
+    private void disconnected() {
+        synchronized (this) {
+            connected = false;
+            invalidateAll();
+            if (closed) {
+                return;
+            }
+        }
+        scheduler.schedule(this::subscribe, RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // The stream itself ends when the client's channel shuts down
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            connected = false;
+            entries.clear();
+        }
+        scheduler.shutdownNow();
+    }
+}
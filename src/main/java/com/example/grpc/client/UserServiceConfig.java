@@ -0,0 +1,117 @@
+// UserServiceConfig.java - per-method retry and hedging policy for the client
+package com.example.grpc.client;
+
+import com.example.grpc.user.UserServiceGrpc;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds the gRPC service config applied to every channel the client opens:
+ * <ul>
+ *   <li>Point reads (GetUser, GetUsers) are hedged: if the first attempt
+ *       hasn't answered after {@code hedgingDelay}, another is sent, up to
+ *       {@code maxHedgedAttempts}, and the first reply wins. With
+ *       {@code maxHedgedAttempts} of 1 they are retried instead.</li>
+ *   <li>The other reads, the scans included, retry UNAVAILABLE with
+ *       exponential backoff. A scan normally runs far past a point read's
+ *       hedging delay, so hedging it would just run every scan
+ *       {@code maxHedgedAttempts} times over.</li>
+ *   <li>Writes (CreateUser, UpdateUser, DeleteUser) are never retried. An
+ *       attempt that fails with UNAVAILABLE may still have committed, and
+ *       its retry would then report ALREADY_EXISTS or NOT_FOUND for a
+ *       write that succeeded.</li>
+ *   <li>Retry throttling stops both once too many attempts fail, so an outage
+ *       doesn't turn into a retry storm.</li>
+ *   <li>Every call gets a default deadline: {@code callTimeout} for point
+ *       reads and writes, {@code scanTimeout} for GetAllUsers and
+ *       StreamUsers. The deadline travels with the call, so the server stops
+ *       working on it once it passes. WatchInvalidations is long-lived and
+ *       has none.</li>
+ * </ul>
+ */
+public record UserServiceConfig(Duration hedgingDelay, int maxHedgedAttempts,
+                                int maxRetryAttempts, Duration initialBackoff, Duration maxBackoff,
+                                double backoffMultiplier, int throttlingMaxTokens, double throttlingTokenRatio,
+                                Duration callTimeout, Duration scanTimeout) {
+
+    public static final UserServiceConfig DEFAULT = new UserServiceConfig(
+            Duration.ofMillis(50), 3, 4, Duration.ofMillis(100), Duration.ofSeconds(2), 2.0, 10, 0.1,
+            Duration.ofSeconds(5), Duration.ofSeconds(60));
+
+    private static final String GET_USER = UserServiceGrpc.getGetUserMethod().getBareMethodName();
+    private static final String GET_USERS = UserServiceGrpc.getGetUsersMethod().getBareMethodName();
+    private static final String GET_ALL_USERS = UserServiceGrpc.getGetAllUsersMethod().getBareMethodName();
+    private static final String STREAM_USERS = UserServiceGrpc.getStreamUsersMethod().getBareMethodName();
+    private static final String WATCH_INVALIDATIONS = UserServiceGrpc.getWatchInvalidationsMethod().getBareMethodName();
+
+    private static final List<String> HEDGED_METHODS = List.of(GET_USER, GET_USERS);
+
+    public UserServiceConfig withHedgingDelay(Duration delay) {
+        return new UserServiceConfig(delay, maxHedgedAttempts, maxRetryAttempts, initialBackoff, maxBackoff,
+                backoffMultiplier, throttlingMaxTokens, throttlingTokenRatio, callTimeout, scanTimeout);
+    }
+
+    // For channels that can't send a hedge anywhere but where the first
+    // attempt went
+    public UserServiceConfig withoutHedging() {
+        return new UserServiceConfig(hedgingDelay, 1, maxRetryAttempts, initialBackoff, maxBackoff,
+                backoffMultiplier, throttlingMaxTokens, throttlingTokenRatio, callTimeout, scanTimeout);
+    }
+
+    public UserServiceConfig withTimeouts(Duration call, Duration scan) {
+        return new UserServiceConfig(hedgingDelay, maxHedgedAttempts, maxRetryAttempts, initialBackoff, maxBackoff,
+                backoffMultiplier, throttlingMaxTokens, throttlingTokenRatio, call, scan);
+    }
+
+    boolean isHedged(String bareMethodName) {
+        return maxHedgedAttempts > 1 && HEDGED_METHODS.contains(bareMethodName);
+    }
+
+    // In the JSON-like shape ManagedChannelBuilder.defaultServiceConfig expects:
+    // numbers as Double, durations as "1.5s"
+    public Map<String, Object> toServiceConfig() {
+        Map<String, Object> hedgingPolicy = Map.of(
+                "maxAttempts", (double) maxHedgedAttempts,
+                "hedgingDelay", seconds(hedgingDelay),
+                "nonFatalStatusCodes", List.of("UNAVAILABLE"));
+        Map<String, Object> retryPolicy = Map.of(
+                "maxAttempts", (double) maxRetryAttempts,
+                "initialBackoff", seconds(initialBackoff),
+                "maxBackoff", seconds(maxBackoff),
+                "backoffMultiplier", backoffMultiplier,
+                "retryableStatusCodes", List.of("UNAVAILABLE"));
+        // The most specific name wins, so the service-wide entry only covers
+        // the writes, which get a deadline and nothing else
+        List<Map<String, Object>> methodConfig = List.of(
+                Map.of("name", methods(GET_USER, GET_USERS),
+                        maxHedgedAttempts > 1 ? "hedgingPolicy" : "retryPolicy",
+                        maxHedgedAttempts > 1 ? hedgingPolicy : retryPolicy,
+                        "timeout", seconds(callTimeout)),
+                Map.of("name", methods(GET_ALL_USERS, STREAM_USERS),
+                        "retryPolicy", retryPolicy,
+                        "timeout", seconds(scanTimeout)),
+                Map.of("name", methods(WATCH_INVALIDATIONS),
+                        "retryPolicy", retryPolicy),
+                Map.of("name", List.of(Map.of("service", UserServiceGrpc.SERVICE_NAME)),
+                        "timeout", seconds(callTimeout)));
+        return Map.of(
+                "methodConfig", methodConfig,
+                "retryThrottling", Map.of(
+                        "maxTokens", (double) throttlingMaxTokens,
+                        "tokenRatio", throttlingTokenRatio));
+    }
+
+    private static List<Map<String, Object>> methods(String... names) {
+        return Arrays.stream(names)
+                .map(method -> Map.<String, Object>of("service", UserServiceGrpc.SERVICE_NAME, "method", method))
+                .toList();
+    }
+
+    private static String seconds(Duration duration) {
+        return String.format(Locale.ROOT, "%.9fs", duration.toNanos() / 1e9);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.grpc.service;
+
+import com.example.executor.Lane;
+import com.example.restapi.service.WriteBehindUserWriter;
+import com.github.xds.data.orca.v3.OrcaLoadReport;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks this replica's load and renders it as an ORCA {@link OrcaLoadReport}
+ * for per-call trailers and the out-of-band OpenRcaService stream:
+ * <ul>
+ *   <li>cpu_utilization - process CPU as a fraction of the machine</li>
+ *   <li>rps_fractional / eps - completed and failed RPCs per second</li>
+ *   <li>utilization["jdbc_pool"] - busy fraction of the JDBC pool</li>
+ *   <li>named_metrics["inflight_rpcs"], ["jdbc_queue_depth"]</li>
+ *   <li>named_metrics["executor_queue_depth"] - calls waiting for a handler
+ *       thread across all lanes, plus one entry per lane</li>
+ *   <li>named_metrics["write_behind_queue_depth"] - acknowledged creates not
+ *       yet committed, when write-behind is enabled</li>
+ * </ul>
+ * The snapshot is refreshed at most every {@code REFRESH_NANOS}, so attaching
+ * it to every call costs a volatile read.
+ */
+@Component
+public class BackendLoadMonitor {
+    
+    private static final long REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final DataSource dataSource;
+    private final MethodExecutorRouter executorRouter;
+    private final WriteBehindUserWriter writeBehind;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    
+    private volatile OrcaLoadReport report = OrcaLoadReport.getDefaultInstance();
+    private volatile long reportTime;
+    
+    // Guarded by this
+    private long windowStart = System.nanoTime();
+    private long windowCompleted;
+    private long windowFailed;
+    private double rps;
+    private double eps;
+    
+    public BackendLoadMonitor(DataSource dataSource, MethodExecutorRouter executorRouter,
+                              WriteBehindUserWriter writeBehind) {
+        this.dataSource = dataSource;
+        this.executorRouter = executorRouter;
+        this.writeBehind = writeBehind;
+    }
+    
+    public void callStarted() {
+        inFlight.incrementAndGet();
+    }
+    
+    public void callFinished(boolean ok) {
+        inFlight.decrementAndGet();
+        completed.incrementAndGet();
+        if (!ok) {
+            failed.incrementAndGet();
+        }
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    public OrcaLoadReport currentReport() {
+        if (System.nanoTime() - reportTime > REFRESH_NANOS) {
+            refresh();
+        }
+        return report;
+    }
+    
+    private synchronized void refresh() {
+        long now = System.nanoTime();
+        if (now - reportTime <= REFRESH_NANOS) {
+            return;
+        }
+        long elapsed = now - windowStart;
+        if (elapsed >= RATE_WINDOW_NANOS) {
+            long done = completed.get();
+            long errors = failed.get();
+            rps = (done - windowCompleted) * 1e9 / elapsed;
+            eps = (errors - windowFailed) * 1e9 / elapsed;
+            windowCompleted = done;
+            windowFailed = errors;
+            windowStart = now;
+        }
+        
+        OrcaLoadReport.Builder builder = OrcaLoadReport.newBuilder()
+                .setCpuUtilization(processCpuLoad())
+                .setRpsFractional(rps)
+                .setEps(eps)
+                .putNamedMetrics("inflight_rpcs", inFlight.get());
+        int queued = 0;
+        for (Lane lane : Lane.values()) {
+            int depth = executorRouter.queueDepth(lane);
+            builder.putNamedMetrics("executor_queue_depth." + lane.name().toLowerCase(), depth);
+            queued += depth;
+        }
+        builder.putNamedMetrics("executor_queue_depth", queued);
+        if (writeBehind.isEnabled()) {
+            builder.putNamedMetrics("write_behind_queue_depth", writeBehind.getQueueDepth());
+        }
+        HikariPoolMXBean pool = jdbcPool();
+        if (pool != null && pool.getTotalConnections() > 0) {
+            builder.putUtilization("jdbc_pool", (double) pool.getActiveConnections() / pool.getTotalConnections());
+            builder.putNamedMetrics("jdbc_queue_depth", pool.getThreadsAwaitingConnection());
+        }
+        report = builder.build();
+        reportTime = now;
+    }
+    
+    private double processCpuLoad() {
+        if (os instanceof com.sun.management.OperatingSystemMXBean sunOs) {
+            double load = sunOs.getProcessCpuLoad();
+            if (load >= 0) {
+                return load;
+            }
+        }
+        // Fallback: load average per core, capped at fully busy
+        double average = os.getSystemLoadAverage();
+        return average < 0 ? 0 : Math.min(1.0, average / os.getAvailableProcessors());
+    }
+    
+    private HikariPoolMXBean jdbcPool() {
+        if (dataSource instanceof HikariDataSource hikari) {
+            return hikari.getHikariPoolMXBean();
+        }
+        return null;
+    }
+}
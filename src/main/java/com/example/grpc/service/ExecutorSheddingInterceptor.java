@@ -0,0 +1,35 @@
+package com.example.grpc.service;
+
+import com.example.executor.Lane;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import net.devh.boot.grpc.common.util.InterceptorOrder;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Fails calls that {@link MethodExecutorRouter} couldn't queue, before they
+ * reach the service. RESOURCE_EXHAUSTED rather than
+ * UNAVAILABLE keeps shed calls out of the client's retry and hedging policies,
+ * which would otherwise send the same load straight back to a full lane.
+ */
+@GrpcGlobalServerInterceptor
+@Order(InterceptorOrder.ORDER_SECURITY_AUTHORISATION)
+public class ExecutorSheddingInterceptor implements ServerInterceptor {
+    
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        Lane lane = MethodExecutorRouter.shedLane();
+        if (lane == null) {
+            return next.startCall(call, headers);
+        }
+        call.close(Status.RESOURCE_EXHAUSTED.withDescription("Server busy: " + lane + " queue is full"),
+                new Metadata());
+        return new ServerCall.Listener<>() {
+        };
+    }
+}
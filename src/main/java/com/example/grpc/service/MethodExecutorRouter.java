@@ -0,0 +1,194 @@
+package com.example.grpc.service;
+
+import com.example.executor.Lane;
+import com.example.executor.LaneProperties;
+import com.example.grpc.user.UserServiceGrpc;
+import io.grpc.Metadata;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import jakarta.annotation.PreDestroy;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs each UserService call on the thread pool of its {@link Lane}, so
+ * GetUser never waits behind a burst of GetAllUsers or StreamUsers. Other
+ * methods stay on the server's default executor.
+ *
+ * <p>A pool's queue takes at most the lane's queue limit of calls waiting
+ * to start. The pool rejects a start beyond that, and the call is shed: its
+ * start runs on the thread that handed it over instead, where
+ * {@link ExecutorSheddingInterceptor} closes it before any handler code
+ * runs. Later callbacks of a call that got in (its request, half-close,
+ * onReady) always queue, because gRPC can't take one back once the call has
+ * started.
+ */
+@Component
+@EnableConfigurationProperties(LaneProperties.class)
+public class MethodExecutorRouter implements ServerCallExecutorSupplier, GrpcServerConfigurer {
+    
+    // Set while a shed call starts, for the interceptor
+    private static final ThreadLocal<Lane> SHED_LANE = new ThreadLocal<>();
+    
+    private final Map<Lane, ThreadPoolExecutor> executors = new EnumMap<>(Lane.class);
+    
+    public MethodExecutorRouter(LaneProperties properties) {
+        for (Lane lane : Lane.values()) {
+            LaneProperties.Limits limits = properties.limits(lane);
+            executors.put(lane, newPool(lane, limits.getThreads(), limits.getQueueLimit()));
+        }
+    }
+    
+    @Override
+    public void accept(ServerBuilder<?> serverBuilder) {
+        serverBuilder.callExecutor(this);
+    }
+    
+    @Override
+    public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata headers) {
+        if (!UserServiceGrpc.SERVICE_NAME.equals(call.getMethodDescriptor().getServiceName())) {
+            return null;
+        }
+        Lane lane = Lane.forMethod(call.getMethodDescriptor().getBareMethodName());
+        if (lane == null) {
+            return null;
+        }
+        return new CallExecutor(lane, executors.get(lane));
+    }
+    
+    // The lane of the call being shed on this thread, or null
+    static Lane shedLane() {
+        return SHED_LANE.get();
+    }
+    
+    public int queueDepth(Lane lane) {
+        return executors.get(lane).getQueue().size();
+    }
+    
+    public int activeThreads(Lane lane) {
+        return executors.get(lane).getActiveCount();
+    }
+    
+    private static ThreadPoolExecutor newPool(Lane lane, int threads, int queueLimit) {
+        String prefix = "grpc-" + lane.name().toLowerCase().replace('_', '-') + "-";
+        AtomicInteger count = new AtomicInteger();
+        // AbortPolicy: the CallExecutor turns the rejection into shedding
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LaneQueue(queueLimit), r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+    
+    // A call's first task, the one that starts it
+    private record CallStart(Runnable task) implements Runnable {
+        
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+    
+    // One per call; gRPC hands it the call's tasks one at a time
+    private static final class CallExecutor implements Executor {
+        
+        private final Lane lane;
+        private final ThreadPoolExecutor pool;
+        private volatile boolean started;
+        private volatile boolean shed;
+        
+        CallExecutor(Lane lane, ThreadPoolExecutor pool) {
+            this.lane = lane;
+            this.pool = pool;
+        }
+        
+        @Override
+        public void execute(Runnable task) {
+            if (shed) {
+                // The call is closed; what's left are no-op callbacks
+                task.run();
+                return;
+            }
+            if (started) {
+                pool.execute(task);
+                return;
+            }
+            started = true;
+            try {
+                pool.execute(new CallStart(task));
+            } catch (RejectedExecutionException e) {
+                shed = true;
+                SHED_LANE.set(lane);
+                try {
+                    task.run();
+                } finally {
+                    SHED_LANE.remove();
+                }
+            }
+        }
+    }
+    
+    // Bounded in call starts; any other task is always accepted
+    private static final class LaneQueue extends LinkedBlockingQueue<Runnable> {
+        
+        private final int startLimit;
+        private final AtomicInteger starts = new AtomicInteger();
+        
+        LaneQueue(int startLimit) {
+            this.startLimit = startLimit;
+        }
+        
+        @Override
+        public boolean offer(Runnable task) {
+            if (task instanceof CallStart) {
+                if (starts.incrementAndGet() > startLimit) {
+                    starts.decrementAndGet();
+                    return false;
+                }
+            }
+            return super.offer(task);
+        }
+        
+        @Override
+        public Runnable take() throws InterruptedException {
+            return taken(super.take());
+        }
+        
+        @Override
+        public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return taken(super.poll(timeout, unit));
+        }
+        
+        @Override
+        public boolean remove(Object task) {
+            boolean removed = super.remove(task);
+            if (removed) {
+                taken((Runnable) task);
+            }
+            return removed;
+        }
+        
+        private Runnable taken(Runnable task) {
+            if (task instanceof CallStart) {
+                starts.decrementAndGet();
+            }
+            return task;
+        }
+    }
+}
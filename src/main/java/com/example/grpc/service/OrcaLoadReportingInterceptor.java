@@ -0,0 +1,79 @@
+package com.example.grpc.service;
+
+import com.example.grpc.user.UserServiceGrpc;
+import com.github.xds.data.orca.v3.OrcaLoadReport;
+import com.github.xds.service.orca.v3.OpenRcaServiceGrpc;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.protobuf.ProtoUtils;
+import lombok.RequiredArgsConstructor;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Counts in-flight RPCs for {@link BackendLoadMonitor} and attaches the
+ * current ORCA load report to every response's trailers under the standard
+ * {@code endpoint-load-metrics-bin} key.
+ */
+@GrpcGlobalServerInterceptor
+@RequiredArgsConstructor
+public class OrcaLoadReportingInterceptor implements ServerInterceptor {
+    
+    public static final Metadata.Key<OrcaLoadReport> ORCA_TRAILER_KEY = Metadata.Key.of(
+            "endpoint-load-metrics-bin", ProtoUtils.metadataMarshaller(OrcaLoadReport.getDefaultInstance()));
+    
+    // Long-lived subscriptions that say nothing about how busy we are
+    private static final Set<String> UNTRACKED_METHODS = Set.of(
+            OpenRcaServiceGrpc.getStreamCoreMetricsMethod().getFullMethodName(),
+            UserServiceGrpc.getWatchInvalidationsMethod().getFullMethodName());
+    
+    private final BackendLoadMonitor loadMonitor;
+    
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if (UNTRACKED_METHODS.contains(call.getMethodDescriptor().getFullMethodName())) {
+            return next.startCall(call, headers);
+        }
+        AtomicBoolean finished = new AtomicBoolean();
+        loadMonitor.callStarted();
+        
+        ServerCall<ReqT, RespT> reportingCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                if (finished.compareAndSet(false, true)) {
+                    loadMonitor.callFinished(status.isOk());
+                }
+                trailers.put(ORCA_TRAILER_KEY, loadMonitor.currentReport());
+                super.close(status, trailers);
+            }
+        };
+        
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(reportingCall, headers);
+        } catch (RuntimeException e) {
+            if (finished.compareAndSet(false, true)) {
+                loadMonitor.callFinished(false);
+            }
+            throw e;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            // A cancelled call may never reach close()
+            @Override
+            public void onCancel() {
+                if (finished.compareAndSet(false, true)) {
+                    loadMonitor.callFinished(false);
+                }
+                super.onCancel();
+            }
+        };
+    }
+}
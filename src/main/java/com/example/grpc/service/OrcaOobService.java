@@ -0,0 +1,59 @@
+package com.example.grpc.service;
+
+import com.github.xds.data.orca.v3.OrcaLoadReport;
+import com.github.xds.service.orca.v3.OpenRcaServiceGrpc;
+import com.github.xds.service.orca.v3.OrcaLoadReportRequest;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
+import net.devh.boot.grpc.server.service.GrpcService;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Out-of-band ORCA: streams load reports at the interval each client asks for
+@GrpcService
+public class OrcaOobService extends OpenRcaServiceGrpc.OpenRcaServiceImplBase {
+    
+    private static final long MIN_INTERVAL_MILLIS = 500;
+    
+    private final BackendLoadMonitor loadMonitor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "orca-oob-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public OrcaOobService(BackendLoadMonitor loadMonitor) {
+        this.loadMonitor = loadMonitor;
+    }
+    
+    @Override
+    public void streamCoreMetrics(OrcaLoadReportRequest request, StreamObserver<OrcaLoadReport> responseObserver) {
+        ServerCallStreamObserver<OrcaLoadReport> serverObserver =
+                (ServerCallStreamObserver<OrcaLoadReport>) responseObserver;
+        long intervalMillis = Math.max(MIN_INTERVAL_MILLIS,
+                request.getReportInterval().getSeconds() * 1000 + request.getReportInterval().getNanos() / 1_000_000);
+        
+        // The handler goes in before the first report is scheduled; it runs
+        // on this call's executor, so not before this method returns
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+        serverObserver.setOnCancelHandler(() -> task.get().cancel(false));
+        task.set(scheduler.scheduleAtFixedRate(() -> {
+            synchronized (serverObserver) {
+                // Skip a beat rather than queue reports for a slow reader
+                if (!serverObserver.isCancelled() && serverObserver.isReady()) {
+                    serverObserver.onNext(loadMonitor.currentReport());
+                }
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
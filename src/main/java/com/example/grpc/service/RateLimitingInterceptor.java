@@ -0,0 +1,71 @@
+package com.example.grpc.service;
+
+import com.example.grpc.user.UserServiceGrpc;
+import com.example.ratelimit.RateLimitProperties;
+import com.example.ratelimit.RateLimiter;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import net.devh.boot.grpc.common.util.InterceptorOrder;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.core.annotation.Order;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects UserService calls over the caller's quota with RESOURCE_EXHAUSTED
+ * before they reach the handler or count as load. The standard
+ * {@code grpc-retry-pushback-ms} trailer tells the client when to try again.
+ */
+@GrpcGlobalServerInterceptor
+@Order(InterceptorOrder.ORDER_SECURITY_AUTHORISATION + 1)
+public class RateLimitingInterceptor implements ServerInterceptor {
+    
+    static final Metadata.Key<String> RETRY_PUSHBACK_KEY =
+            Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+    
+    private final RateLimiter rateLimiter;
+    private final Metadata.Key<String> apiKeyHeader;
+    
+    public RateLimitingInterceptor(RateLimiter rateLimiter, RateLimitProperties properties) {
+        this.rateLimiter = rateLimiter;
+        this.apiKeyHeader = Metadata.Key.of(properties.getApiKeyHeader(), Metadata.ASCII_STRING_MARSHALLER);
+    }
+    
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if (!UserServiceGrpc.SERVICE_NAME.equals(call.getMethodDescriptor().getServiceName())) {
+            return next.startCall(call, headers);
+        }
+        String method = call.getMethodDescriptor().getBareMethodName();
+        long waitNanos = rateLimiter.tryAcquire(caller(call, headers), method);
+        if (waitNanos == 0) {
+            return next.startCall(call, headers);
+        }
+        long waitMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        Metadata trailers = new Metadata();
+        trailers.put(RETRY_PUSHBACK_KEY, Long.toString(waitMillis));
+        call.close(Status.RESOURCE_EXHAUSTED
+                .withDescription("Rate limit exceeded for " + method + ", retry in " + waitMillis + " ms"), trailers);
+        return new ServerCall.Listener<>() {
+        };
+    }
+    
+    private String caller(ServerCall<?, ?> call, Metadata headers) {
+        String apiKey = headers.get(apiKeyHeader);
+        if (apiKey != null) {
+            return apiKey;
+        }
+        SocketAddress remote = call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+        if (remote instanceof InetSocketAddress address) {
+            return address.getAddress().getHostAddress();
+        }
+        return String.valueOf(remote);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.grpc.service;
+
+import com.example.restapi.service.UserAlreadyExistsException;
+import com.example.restapi.service.UserNotFoundException;
+import com.example.restapi.service.UserVersionConflictException;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.springframework.dao.QueryTimeoutException;
+
+/**
+ * Turns the service layer's expected failures into gRPC statuses, so clients
+ * see NOT_FOUND or ALREADY_EXISTS instead of UNKNOWN. Anything else is passed
+ * through unchanged and still reaches the client as UNKNOWN.
+ */
+public final class StatusMapper {
+
+    private StatusMapper() {
+    }
+
+    public static Throwable toStatusException(Throwable e) {
+        Status status = statusOf(e);
+        if (status == null) {
+            return e;
+        }
+        return new StacklessStatusException(status.withDescription(e.getMessage()));
+    }
+
+    private static Status statusOf(Throwable e) {
+        if (e instanceof UserNotFoundException) {
+            return Status.NOT_FOUND;
+        }
+        if (e instanceof UserAlreadyExistsException) {
+            return Status.ALREADY_EXISTS;
+        }
+        // The read-modify-write lost a race; the client should re-read and retry
+        if (e instanceof UserVersionConflictException) {
+            return Status.ABORTED;
+        }
+        if (e instanceof QueryTimeoutException) {
+            return Status.DEADLINE_EXCEEDED;
+        }
+        return null;
+    }
+
+    // Only the status crosses the wire, so the trace would never be seen
+    private static final class StacklessStatusException extends StatusRuntimeException {
+
+        StacklessStatusException(Status status) {
+            super(status, (Metadata) null);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
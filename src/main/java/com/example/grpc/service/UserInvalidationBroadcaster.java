@@ -0,0 +1,78 @@
+package com.example.grpc.service;
+
+import com.example.grpc.user.UserInvalidation;
+import com.example.restapi.service.UserChangedEvent;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fans committed user changes out to every open WatchInvalidations stream.
+ * A subscriber that stops reading is dropped rather than buffered for; the
+ * client then reconnects and flushes its cache, which keeps it coherent.
+ */
+@Slf4j
+@Component
+public class UserInvalidationBroadcaster {
+    
+    private static final UserInvalidation FLUSH_ALL = UserInvalidation.newBuilder()
+            .setFlushAll(true)
+            .build();
+    
+    private final Set<ServerCallStreamObserver<UserInvalidation>> subscribers = ConcurrentHashMap.newKeySet();
+    
+    public void subscribe(ServerCallStreamObserver<UserInvalidation> observer) {
+        observer.setOnCancelHandler(() -> subscribers.remove(observer));
+        subscribers.add(observer);
+        // Sent after registering, so nothing committed from here on is missed
+        send(observer, FLUSH_ALL);
+    }
+    
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        UserInvalidation.Builder builder = UserInvalidation.newBuilder()
+                .setId(event.id())
+                .setDeleted(event.deleted());
+        if (event.version() != null) {
+            builder.setVersion(event.version());
+        }
+        UserInvalidation invalidation = builder.build();
+        for (ServerCallStreamObserver<UserInvalidation> observer : subscribers) {
+            send(observer, invalidation);
+        }
+    }
+    
+    private void send(ServerCallStreamObserver<UserInvalidation> observer, UserInvalidation invalidation) {
+        // StreamObserver isn't thread-safe; commits can arrive on many threads
+        synchronized (observer) {
+            if (!subscribers.contains(observer)) {
+                return;
+            }
+            try {
+                if (!observer.isReady() && invalidation != FLUSH_ALL) {
+                    subscribers.remove(observer);
+                    observer.onError(Status.RESOURCE_EXHAUSTED
+                            .withDescription("Invalidation subscriber fell behind")
+                            .asRuntimeException());
+                    return;
+                }
+                observer.onNext(invalidation);
+            } catch (RuntimeException e) {
+                log.debug("Dropping invalidation subscriber", e);
+                subscribers.remove(observer);
+            }
+        }
+    }
+}
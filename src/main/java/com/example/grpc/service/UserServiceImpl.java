@@ -1,78 +1,100 @@
 package com.example.grpc.service;
 
 import com.example.grpc.user.*;
+import com.example.mapping.UserMapper;
 import com.example.restapi.model.User;
 import com.example.restapi.service.UserService;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import net.devh.boot.grpc.server.service.GrpcService;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @GrpcService
 @RequiredArgsConstructor
 public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
     
+    // Rows StreamUsers reads from the store at a time
+    private static final int STREAM_PAGE_SIZE = 500;
+    
     private final UserService userService;
+    private final UserInvalidationBroadcaster invalidationBroadcaster;
     
     @Override
     public void getUser(GetUserRequest request, StreamObserver<UserResponse> responseObserver) {
         try {
-            User user = userService.getUserById(request.getId());
-            UserResponse response = mapToUserResponse(user);
+            UserResponse response = userService.getUserResponse(request.getId());
             responseObserver.onNext(response);
             responseObserver.onCompleted();
         } catch (Exception e) {
-            responseObserver.onError(e);
+            responseObserver.onError(StatusMapper.toStatusException(e));
         }
     }
     
     @Override
     public void getAllUsers(Empty request, StreamObserver<UserListResponse> responseObserver) {
         try {
-            List<User> users = userService.getAllUsers();
-            UserListResponse.Builder builder = UserListResponse.newBuilder();
-            for (User user : users) {
-                builder.addUsers(mapToUserResponse(user));
+            // Stop mapping rows once the client has cancelled or timed out
+            Context context = Context.current();
+            UserListResponse.Builder response = UserListResponse.newBuilder();
+            boolean complete = userService.forEachUserResponse(remainingTime(), user -> {
+                if (context.isCancelled()) {
+                    return false;
+                }
+                response.addUsers(user);
+                return true;
+            });
+            if (!complete) {
+                return;
             }
-            responseObserver.onNext(builder.build());
+            responseObserver.onNext(response.build());
             responseObserver.onCompleted();
         } catch (Exception e) {
-            responseObserver.onError(e);
+            responseObserver.onError(StatusMapper.toStatusException(e));
+        }
+    }
+    
+    @Override
+    public void getUsers(GetUsersRequest request, StreamObserver<UserListResponse> responseObserver) {
+        try {
+            List<User> users = userService.getUsersByIds(request.getIdsList(), remainingTime());
+            responseObserver.onNext(UserMapper.toUserListResponse(users));
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            responseObserver.onError(StatusMapper.toStatusException(e));
         }
     }
     
     @Override
     public void createUser(CreateUserRequest request, StreamObserver<UserResponse> responseObserver) {
         try {
-            User user = new User();
-            user.setName(request.getName());
-            user.setEmail(request.getEmail());
-            user.setPhone(request.getPhone());
-            
+            User user = UserMapper.fromCreateRequest(request);
             User createdUser = userService.createUser(user);
-            UserResponse response = mapToUserResponse(createdUser);
+            UserResponse response = UserMapper.toUserResponse(createdUser);
             responseObserver.onNext(response);
             responseObserver.onCompleted();
         } catch (Exception e) {
-            responseObserver.onError(e);
+            responseObserver.onError(StatusMapper.toStatusException(e));
         }
     }
     
     @Override
     public void updateUser(UpdateUserRequest request, StreamObserver<UserResponse> responseObserver) {
         try {
-            User user = new User();
-            user.setName(request.getName());
-            user.setEmail(request.getEmail());
-            user.setPhone(request.getPhone());
-            
+            User user = UserMapper.fromUpdateRequest(request);
             User updatedUser = userService.updateUser(request.getId(), user);
-            UserResponse response = mapToUserResponse(updatedUser);
+            UserResponse response = UserMapper.toUserResponse(updatedUser);
             responseObserver.onNext(response);
             responseObserver.onCompleted();
         } catch (Exception e) {
-            responseObserver.onError(e);
+            responseObserver.onError(StatusMapper.toStatusException(e));
         }
     }
     
@@ -83,31 +105,74 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
             responseObserver.onNext(Empty.newBuilder().build());
             responseObserver.onCompleted();
         } catch (Exception e) {
-            responseObserver.onError(e);
+            responseObserver.onError(StatusMapper.toStatusException(e));
         }
     }
     
+    // Returns straight away; the rows go out from onReady callbacks
     @Override
     public void streamUsers(Empty request, StreamObserver<UserResponse> responseObserver) {
-        try {
-            List<User> users = userService.getAllUsers();
-            for (User user : users) {
-                UserResponse response = mapToUserResponse(user);
-                responseObserver.onNext(response);
-                Thread.sleep(100);
-            }
-            responseObserver.onCompleted();
-        } catch (Exception e) {
-            responseObserver.onError(e);
-        }
+        new UserStream((ServerCallStreamObserver<UserResponse>) responseObserver).start();
+    }
+    
+    @Override
+    public void watchInvalidations(Empty request, StreamObserver<UserInvalidation> responseObserver) {
+        invalidationBroadcaster.subscribe((ServerCallStreamObserver<UserInvalidation>) responseObserver);
     }
     
-    private UserResponse mapToUserResponse(User user) {
-        return UserResponse.newBuilder()
-                .setId(user.getId())
-                .setName(user.getName())
-                .setEmail(user.getEmail())
-                .setPhone(user.getPhone() != null ? user.getPhone() : "")
-                .build();
+    // Time left before the client's deadline, or null if it didn't set one
+    private static Duration remainingTime() {
+        Deadline deadline = Context.current().getDeadline();
+        return deadline == null ? null : Duration.ofNanos(deadline.timeRemaining(TimeUnit.NANOSECONDS));
+    }
+    
+    /**
+     * Sends every user while the client keeps reading. Each onReady callback
+     * writes rows until the transport stops being ready, reading the next
+     * page from the store when the current one runs out. A client that stops
+     * reading therefore holds neither a handler thread nor a database
+     * connection, just the position of its last row. gRPC never runs two
+     * callbacks of one call at once, so the state needs no locking.
+     */
+    private final class UserStream implements Runnable {
+        
+        private final ServerCallStreamObserver<UserResponse> observer;
+        private Iterator<UserResponse> page = Collections.emptyIterator();
+        private long lastId;
+        private boolean lastPage;
+        private boolean done;
+        
+        UserStream(ServerCallStreamObserver<UserResponse> observer) {
+            this.observer = observer;
+        }
+        
+        void start() {
+            observer.setOnCancelHandler(() -> done = true);
+            observer.setOnReadyHandler(this);
+        }
+        
+        @Override
+        public void run() {
+            try {
+                while (!done && observer.isReady()) {
+                    if (page.hasNext()) {
+                        UserResponse user = page.next();
+                        lastId = user.getId();
+                        observer.onNext(user);
+                    } else if (lastPage) {
+                        done = true;
+                        observer.onCompleted();
+                    } else {
+                        List<UserResponse> users =
+                                userService.getUserResponsePage(lastId, STREAM_PAGE_SIZE, remainingTime());
+                        lastPage = users.size() < STREAM_PAGE_SIZE;
+                        page = users.iterator();
+                    }
+                }
+            } catch (Exception e) {
+                done = true;
+                observer.onError(StatusMapper.toStatusException(e));
+            }
+        }
     }
 }
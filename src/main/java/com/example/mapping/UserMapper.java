@@ -0,0 +1,72 @@
+package com.example.mapping;
+
+import com.example.grpc.user.CreateUserRequest;
+import com.example.grpc.user.UpdateUserRequest;
+import com.example.grpc.user.UserListResponse;
+import com.example.grpc.user.UserResponse;
+import com.example.restapi.model.User;
+import com.google.protobuf.Timestamp;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Conversions between the {@link User} entity and the generated protobuf
+ * messages, shared by the gRPC service and the protobuf REST endpoints.
+ */
+public final class UserMapper {
+
+    private UserMapper() {
+    }
+
+    public static UserResponse toUserResponse(User user) {
+        UserResponse.Builder response = UserResponse.newBuilder()
+                .setId(user.getId())
+                .setName(user.getName())
+                .setEmail(user.getEmail())
+                .setPhone(user.getPhone() != null ? user.getPhone() : "")
+                .setVersion(user.getVersion() != null ? user.getVersion() : 0);
+        if (user.getUpdatedAt() != null) {
+            response.setUpdatedAt(toTimestamp(user.getUpdatedAt()));
+        }
+        return response.build();
+    }
+
+    public static Timestamp toTimestamp(Instant instant) {
+        return Timestamp.newBuilder()
+                .setSeconds(instant.getEpochSecond())
+                .setNanos(instant.getNano())
+                .build();
+    }
+
+    public static Instant toInstant(Timestamp timestamp) {
+        return Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos());
+    }
+
+    public static UserListResponse toUserListResponse(List<User> users) {
+        UserListResponse.Builder builder = UserListResponse.newBuilder();
+        for (User user : users) {
+            builder.addUsers(toUserResponse(user));
+        }
+        return builder.build();
+    }
+
+    public static User fromCreateRequest(CreateUserRequest request) {
+        User user = new User();
+        user.setName(request.getName());
+        user.setEmail(request.getEmail());
+        user.setPhone(request.getPhone());
+        return user;
+    }
+
+    public static User fromUpdateRequest(UpdateUserRequest request) {
+        User user = new User();
+        user.setName(request.getName());
+        user.setEmail(request.getEmail());
+        user.setPhone(request.getPhone());
+        if (request.hasVersion()) {
+            user.setVersion(request.getVersion());
+        }
+        return user;
+    }
+}
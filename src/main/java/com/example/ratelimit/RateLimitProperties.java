@@ -0,0 +1,43 @@
+package com.example.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-caller quotas, keyed by the UserService method name (GetUser,
+ * GetAllUsers, ...). REST endpoints are charged against the method they
+ * correspond to, so a caller has one budget whichever protocol it uses.
+ */
+@Data
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+    
+    // Off unless something in front of the service authenticates the key
+    // header; otherwise the caller chooses which budget it draws from
+    private boolean enabled = false;
+    
+    // HTTP header / gRPC metadata key identifying the caller; callers
+    // without one are limited by remote address
+    private String apiKeyHeader = "x-api-key";
+    
+    private Duration idleTimeout = Duration.ofMinutes(5);
+    
+    private Quota defaultQuota = new Quota(500, 1000);
+    
+    private Map<String, Quota> methods = new HashMap<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Quota {
+        // 0 or less leaves the method unlimited
+        private double permitsPerSecond;
+        private int burst;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.ratelimit;
+
+import com.example.grpc.user.UserServiceGrpc;
+import io.grpc.MethodDescriptor;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link TokenBucket} per caller and UserService method, shared by the
+ * gRPC interceptor and the REST filter. Callers live in a fixed number of
+ * shards so the idle sweep walks one shard at a time while lookups in the
+ * others carry on; a caller whose buckets have all been full for the idle
+ * timeout is dropped.
+ */
+@Component
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimiter {
+    
+    private static final int SHARDS = 16;
+    
+    private final boolean enabled;
+    private final long idleNanos;
+    private final Map<String, Integer> methodIndex = new HashMap<>();
+    private final RateLimitProperties.Quota[] quotas;
+    private final ConcurrentHashMap<String, TokenBucket[]>[] shards;
+    private final ScheduledExecutorService sweeper;
+    
+    @SuppressWarnings("unchecked")
+    public RateLimiter(RateLimitProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.idleNanos = properties.getIdleTimeout().toNanos();
+        
+        var methods = UserServiceGrpc.getServiceDescriptor().getMethods();
+        this.quotas = new RateLimitProperties.Quota[methods.size()];
+        int index = 0;
+        for (MethodDescriptor<?, ?> method : methods) {
+            String name = method.getBareMethodName();
+            methodIndex.put(name, index);
+            quotas[index++] = properties.getMethods().getOrDefault(name, properties.getDefaultQuota());
+        }
+        
+        this.shards = new ConcurrentHashMap[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepNanos = Math.max(idleNanos / SHARDS, TimeUnit.SECONDS.toNanos(1));
+        sweeper.scheduleWithFixedDelay(new Runnable() {
+            private int next;
+            
+            @Override
+            public void run() {
+                evictIdle(shards[next]);
+                next = (next + 1) % SHARDS;
+            }
+        }, sweepNanos, sweepNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Takes one permit for {@code caller} on {@code method}. Returns 0 if the
+     * call may proceed, otherwise the nanoseconds until it would be allowed.
+     * Methods outside UserService are never limited.
+     */
+    public long tryAcquire(String caller, String method) {
+        if (!enabled) {
+            return 0;
+        }
+        Integer index = methodIndex.get(method);
+        if (index == null || quotas[index].getPermitsPerSecond() <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        ConcurrentHashMap<String, TokenBucket[]> shard = shards[(caller.hashCode() & 0x7fffffff) % SHARDS];
+        TokenBucket[] buckets = shard.get(caller);
+        if (buckets == null) {
+            buckets = shard.computeIfAbsent(caller, key -> newBuckets(now));
+        }
+        return buckets[index].tryAcquire(now);
+    }
+    
+    public int trackedCallers() {
+        int callers = 0;
+        for (ConcurrentHashMap<String, TokenBucket[]> shard : shards) {
+            callers += shard.size();
+        }
+        return callers;
+    }
+    
+    private TokenBucket[] newBuckets(long now) {
+        TokenBucket[] buckets = new TokenBucket[quotas.length];
+        for (int i = 0; i < quotas.length; i++) {
+            if (quotas[i].getPermitsPerSecond() > 0) {
+                buckets[i] = new TokenBucket(quotas[i], now);
+            }
+        }
+        return buckets;
+    }
+    
+    // A permit taken from a bucket while it is being removed is lost, but the
+    // bucket was full anyway, so at worst the caller gets one extra permit
+    private void evictIdle(ConcurrentHashMap<String, TokenBucket[]> shard) {
+        long now = System.nanoTime();
+        shard.entrySet().removeIf(entry -> isIdle(entry.getValue(), now));
+    }
+    
+    private boolean isIdle(TokenBucket[] buckets, long now) {
+        for (TokenBucket bucket : buckets) {
+            if (bucket != null && !bucket.isIdle(now, idleNanos)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+}
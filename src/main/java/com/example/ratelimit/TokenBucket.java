@@ -0,0 +1,42 @@
+package com.example.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, kept as a single "theoretical arrival time" (the
+ * generic cell rate algorithm): the bucket is full whenever that time is in
+ * the past, and every permit pushes it one interval further. Taking a permit
+ * is one CAS on one long, with no refill thread.
+ */
+final class TokenBucket {
+    
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+    
+    TokenBucket(RateLimitProperties.Quota quota, long nowNanos) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / quota.getPermitsPerSecond()));
+        this.burstNanos = intervalNanos * Math.max(1, quota.getBurst());
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+    
+    // Returns 0 if a permit was taken, otherwise how long until one frees up
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, nowNanos) + intervalNanos;
+            long wait = next - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+    
+    // Full and untouched for at least idleNanos, so dropping it loses nothing
+    boolean isIdle(long nowNanos, long idleNanos) {
+        return nowNanos - theoreticalArrival.get() > idleNanos;
+    }
+}
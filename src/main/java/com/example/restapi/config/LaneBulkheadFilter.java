@@ -0,0 +1,232 @@
+package com.example.restapi.config;
+
+import com.example.executor.Lane;
+import com.example.executor.LaneProperties;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * REST side of the executor lanes. Servlet requests all run on the
+ * container's threads, so instead of switching pools each lane gets a
+ * bulkhead: at most {@code threads} requests of a lane run at once, and up
+ * to {@code queueLimit} more wait for a slot, as gRPC calls do. A waiting
+ * request is put into async mode and gives its container thread back, so
+ * queued scans can't take over the container's threads either. A request
+ * that finishes hands its slot to the oldest waiter and dispatches it
+ * again. A full queue, or a wait longer than {@code restQueueTimeout},
+ * gets 503.
+ */
+public class LaneBulkheadFilter extends OncePerRequestFilter {
+    
+    // Set on a waiting request when a slot is handed to it
+    private static final String GRANTED_ATTRIBUTE = LaneBulkheadFilter.class.getName() + ".granted";
+    
+    private final Map<Lane, Bulkhead> bulkheads = new EnumMap<>(Lane.class);
+    private final long queueTimeoutMillis;
+    
+    public LaneBulkheadFilter(LaneProperties properties) {
+        for (Lane lane : Lane.values()) {
+            LaneProperties.Limits limits = properties.limits(lane);
+            bulkheads.put(lane, new Bulkhead(lane, limits.getThreads(), limits.getQueueLimit()));
+        }
+        this.queueTimeoutMillis = properties.getRestQueueTimeout().toMillis();
+    }
+    
+    // A waiting request comes back as an async dispatch once it has a slot
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            Bulkhead granted = (Bulkhead) request.getAttribute(GRANTED_ATTRIBUTE);
+            if (granted == null) {
+                // Spring MVC finishing an async request that already ran here
+                chain.doFilter(request, response);
+            } else {
+                request.removeAttribute(GRANTED_ATTRIBUTE);
+                runHolding(granted, request, response, chain);
+            }
+            return;
+        }
+        String method = UserEndpoints.methodOf(request);
+        Lane lane = method == null ? null : Lane.forMethod(method);
+        if (lane == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Bulkhead bulkhead = bulkheads.get(lane);
+        switch (bulkhead.admit(request, response, queueTimeoutMillis)) {
+            case RUN -> runHolding(bulkhead, request, response, chain);
+            case QUEUED -> {
+                // The container thread goes back to the pool
+            }
+            case REJECTED -> reject(response, lane);
+        }
+    }
+    
+    private static void runHolding(Bulkhead bulkhead, HttpServletRequest request, HttpServletResponse response,
+                                   FilterChain chain) throws ServletException, IOException {
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+            }
+        };
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // A streamed body (NDJSON) is still being written after the
+            // handler returns; hold the slot until it completes
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+    
+    private static void reject(HttpServletResponse response, Lane lane) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"type\":\"about:blank\",\"title\":\"Service Unavailable\",\"status\":503,"
+                + "\"detail\":\"Server busy: " + lane + " lane is full\"}");
+    }
+    
+    private enum Admission {
+        RUN, QUEUED, REJECTED
+    }
+    
+    private static final class Bulkhead {
+        
+        private final Lane lane;
+        private final int slots;
+        private final int queueLimit;
+        
+        // Guarded by this
+        private int running;
+        private final Deque<AsyncContext> waiting = new ArrayDeque<>();
+        
+        Bulkhead(Lane lane, int slots, int queueLimit) {
+            this.lane = lane;
+            this.slots = slots;
+            this.queueLimit = queueLimit;
+        }
+        
+        // Checking for a slot and joining the queue happen under one lock, so
+        // a slot freed in between can't be missed
+        synchronized Admission admit(HttpServletRequest request, HttpServletResponse response, long timeoutMillis) {
+            if (running < slots) {
+                running++;
+                return Admission.RUN;
+            }
+            if (waiting.size() >= queueLimit) {
+                return Admission.REJECTED;
+            }
+            AsyncContext waiter = request.startAsync(request, response);
+            waiter.setTimeout(timeoutMillis);
+            waiter.addListener(new WaitingListener(this, waiter));
+            waiting.add(waiter);
+            return Admission.QUEUED;
+        }
+        
+        // Passes the slot to the oldest waiter, or frees it
+        void release() {
+            AsyncContext next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    running--;
+                    return;
+                }
+            }
+            next.getRequest().setAttribute(GRANTED_ATTRIBUTE, this);
+            next.dispatch();
+        }
+        
+        synchronized boolean withdraw(AsyncContext waiter) {
+            return waiting.remove(waiter);
+        }
+    }
+    
+    // Takes a request that timed out or failed while waiting out of the
+    // queue. One that was handed a slot but ended before it could run passes
+    // the slot on.
+    private record WaitingListener(Bulkhead bulkhead, AsyncContext waiter) implements AsyncListener {
+        
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            if (bulkhead.withdraw(waiter)) {
+                reject((HttpServletResponse) waiter.getResponse(), bulkhead.lane);
+                waiter.complete();
+            }
+        }
+        
+        @Override
+        public void onError(AsyncEvent event) {
+            leave(event);
+        }
+        
+        @Override
+        public void onComplete(AsyncEvent event) {
+            leave(event);
+        }
+        
+        private void leave(AsyncEvent event) {
+            if (!bulkhead.withdraw(waiter) && event.getSuppliedRequest().getAttribute(GRANTED_ATTRIBUTE) != null) {
+                event.getSuppliedRequest().removeAttribute(GRANTED_ATTRIBUTE);
+                bulkhead.release();
+            }
+        }
+        
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Not needed once the request runs
+        }
+    }
+    
+    private record ReleasingListener(Runnable release) implements AsyncListener {
+        
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+        
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+        
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+        
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
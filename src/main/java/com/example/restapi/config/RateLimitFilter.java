@@ -0,0 +1,55 @@
+package com.example.restapi.config;
+
+import com.example.ratelimit.RateLimitProperties;
+import com.example.ratelimit.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REST side of the per-caller rate limit. Each /api/users request is charged
+ * against the gRPC method it corresponds to, and rejected with 429 and a
+ * Retry-After header when the caller is over quota.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+    
+    private final RateLimiter rateLimiter;
+    private final String apiKeyHeader;
+    
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties) {
+        this.rateLimiter = rateLimiter;
+        this.apiKeyHeader = properties.getApiKeyHeader();
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String method = UserEndpoints.methodOf(request);
+        long waitNanos = method == null ? 0 : rateLimiter.tryAcquire(caller(request), method);
+        if (waitNanos == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long waitMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        // Retry-After only takes whole seconds
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString((waitMillis + 999) / 1000));
+        response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"type\":\"about:blank\",\"title\":\"Too Many Requests\",\"status\":429,"
+                + "\"detail\":\"Rate limit exceeded for " + method + ", retry in " + waitMillis + " ms\"}");
+    }
+    
+    private String caller(HttpServletRequest request) {
+        String apiKey = request.getHeader(apiKeyHeader);
+        return apiKey != null ? apiKey : request.getRemoteAddr();
+    }
+}
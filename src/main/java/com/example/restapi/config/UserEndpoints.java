@@ -0,0 +1,37 @@
+package com.example.restapi.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+// Maps /api/users requests to the UserService method they correspond to, so
+// REST and gRPC traffic share quotas and executor lanes
+final class UserEndpoints {
+    
+    private static final String USERS_PATH = "/api/users";
+    
+    private UserEndpoints() {
+    }
+    
+    // null for anything that isn't a user endpoint
+    static String methodOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(USERS_PATH)) {
+            return null;
+        }
+        boolean single = path.length() > USERS_PATH.length() + 1;
+        return switch (request.getMethod()) {
+            case "GET" -> {
+                if (single) {
+                    yield "GetUser";
+                }
+                String accept = request.getHeader(HttpHeaders.ACCEPT);
+                yield accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE) ? "StreamUsers" : "GetAllUsers";
+            }
+            case "POST" -> "CreateUser";
+            case "PUT" -> "UpdateUser";
+            case "DELETE" -> "DeleteUser";
+            default -> null;
+        };
+    }
+}
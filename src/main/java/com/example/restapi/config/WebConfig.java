@@ -0,0 +1,40 @@
+package com.example.restapi.config;
+
+import com.example.executor.LaneProperties;
+import com.example.ratelimit.RateLimitProperties;
+import com.example.ratelimit.RateLimiter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
+
+@Configuration
+public class WebConfig {
+
+    // Picked up by Spring Boot's HttpMessageConverters alongside Jackson, so
+    // protobuf messages can be read and written as application/x-protobuf
+    @Bean
+    public ProtobufHttpMessageConverter protobufHttpMessageConverter() {
+        return new ProtobufHttpMessageConverter();
+    }
+    
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimiter rateLimiter,
+                                                                   RateLimitProperties properties) {
+        FilterRegistrationBean<RateLimitFilter> registration =
+                new FilterRegistrationBean<>(new RateLimitFilter(rateLimiter, properties));
+        registration.addUrlPatterns("/api/users", "/api/users/*");
+        registration.setOrder(1);
+        return registration;
+    }
+    
+    // After the rate limit, so requests over quota never take a lane slot
+    @Bean
+    public FilterRegistrationBean<LaneBulkheadFilter> laneBulkheadFilter(LaneProperties properties) {
+        FilterRegistrationBean<LaneBulkheadFilter> registration =
+                new FilterRegistrationBean<>(new LaneBulkheadFilter(properties));
+        registration.addUrlPatterns("/api/users", "/api/users/*");
+        registration.setOrder(2);
+        return registration;
+    }
+}
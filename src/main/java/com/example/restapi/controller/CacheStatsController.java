@@ -0,0 +1,56 @@
+package com.example.restapi.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Second-level cache statistics: per region hits, misses and puts, plus how
+// many entity loads and queries still reached the database
+@RestController
+@RequestMapping("/api/cache")
+public class CacheStatsController {
+    
+    private final Statistics statistics;
+    
+    public CacheStatsController(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+    
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics stats = statistics.getDomainDataRegionStatistics(region);
+            regions.put(region, regionStats(stats));
+        }
+        
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("regions", regions);
+        body.put("entityLoadsFromDatabase", statistics.getEntityLoadCount());
+        body.put("queryExecutions", statistics.getQueryExecutionCount());
+        body.put("queryCacheHits", statistics.getQueryCacheHitCount());
+        body.put("naturalIdQueryExecutions", statistics.getNaturalIdQueryExecutionCount());
+        body.put("naturalIdCacheHits", statistics.getNaturalIdCacheHitCount());
+        body.put("statisticsSince", statistics.getStart());
+        return ResponseEntity.ok(body);
+    }
+    
+    private static Map<String, Object> regionStats(CacheRegionStatistics stats) {
+        Map<String, Object> region = new LinkedHashMap<>();
+        if (stats == null) {
+            return region;
+        }
+        region.put("hits", stats.getHitCount());
+        region.put("misses", stats.getMissCount());
+        region.put("puts", stats.getPutCount());
+        return region;
+    }
+}
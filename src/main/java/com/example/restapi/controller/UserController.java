@@ -1,12 +1,32 @@
 package com.example.restapi.controller;
 
+import com.example.grpc.user.CreateUserRequest;
+import com.example.grpc.user.UpdateUserRequest;
+import com.example.grpc.user.UserListResponse;
+import com.example.grpc.user.UserResponse;
+import com.example.mapping.UserMapper;
 import com.example.restapi.model.User;
+import com.example.restapi.repository.UserVersion;
+import com.example.restapi.service.UserAlreadyExistsException;
+import com.example.restapi.service.UserException;
+import com.example.restapi.service.UserNotFoundException;
 import com.example.restapi.service.UserService;
+import com.example.restapi.service.UserVersionConflictException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -14,16 +34,30 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserController {
     
+    static final String PROTOBUF_VALUE = "application/x-protobuf";
+    private static final String PROTOBUF_ETAG_SUFFIX = "-pb";
+    
+    // Rows written between explicit flushes of the NDJSON stream
+    private static final int NDJSON_FLUSH_INTERVAL = 100;
+    
     private final UserService userService;
+    private final ObjectMapper objectMapper;
     
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
+    public ResponseEntity<List<User>> getAllUsers(WebRequest request) {
+        if (collectionNotModified(request, "")) {
+            return null;
+        }
         return ResponseEntity.ok(userService.getAllUsers());
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable Long id) {
-        return ResponseEntity.ok(userService.getUserById(id));
+    public ResponseEntity<User> getUserById(@PathVariable Long id, WebRequest request) {
+        if (userNotModified(id, request, "")) {
+            return null;
+        }
+        User user = userService.getUserById(id);
+        return withValidators(user, "").body(user);
     }
     
     @PostMapping
@@ -43,4 +77,129 @@ public class UserController {
         userService.deleteUser(id);
         return ResponseEntity.noContent().build();
     }
+    
+    // Streams one JSON object per line straight from a database cursor, so
+    // time to first byte and heap use don't depend on the table size
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                int[] written = {0};
+                userService.forEachUser(user -> {
+                    try {
+                        generator.writeObject(user);
+                        generator.writeRaw('\n');
+                        if (++written[0] % NDJSON_FLUSH_INTERVAL == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+    
+    // Protobuf variants, selected with Accept / Content-Type: application/x-protobuf
+    
+    @GetMapping(produces = PROTOBUF_VALUE)
+    public ResponseEntity<UserListResponse> getAllUsersProto(WebRequest request) {
+        if (collectionNotModified(request, PROTOBUF_ETAG_SUFFIX)) {
+            return null;
+        }
+        return ResponseEntity.ok(UserMapper.toUserListResponse(userService.getAllUsers()));
+    }
+    
+    @GetMapping(value = "/{id}", produces = PROTOBUF_VALUE)
+    public ResponseEntity<UserResponse> getUserByIdProto(@PathVariable Long id, WebRequest request) {
+        if (userNotModified(id, request, PROTOBUF_ETAG_SUFFIX)) {
+            return null;
+        }
+        UserResponse response = userService.getUserResponse(id);
+        return withValidators(response, PROTOBUF_ETAG_SUFFIX).body(response);
+    }
+    
+    // The response is negotiated apart from the request body: a protobuf
+    // write can be answered as protobuf or, through JsonFormat, as JSON
+    @PostMapping(consumes = PROTOBUF_VALUE,
+            produces = {PROTOBUF_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<UserResponse> createUserProto(@RequestBody CreateUserRequest request) {
+        User createdUser = userService.createUser(UserMapper.fromCreateRequest(request));
+        return ResponseEntity.status(HttpStatus.CREATED).body(UserMapper.toUserResponse(createdUser));
+    }
+    
+    @PutMapping(value = "/{id}", consumes = PROTOBUF_VALUE,
+            produces = {PROTOBUF_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<UserResponse> updateUserProto(@PathVariable Long id, @RequestBody UpdateUserRequest request) {
+        User updatedUser = userService.updateUser(id, UserMapper.fromUpdateRequest(request));
+        return ResponseEntity.ok(UserMapper.toUserResponse(updatedUser));
+    }
+    
+    // Expected failures become 404 / 409 with a problem+json body, whatever
+    // representation was asked for, instead of a 500
+    
+    @ExceptionHandler(UserNotFoundException.class)
+    public ProblemDetail handleNotFound(UserNotFoundException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.NOT_FOUND, e.getMessage());
+    }
+    
+    @ExceptionHandler({UserAlreadyExistsException.class, UserVersionConflictException.class})
+    public ProblemDetail handleConflict(UserException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, e.getMessage());
+    }
+    
+    @ExceptionHandler(QueryTimeoutException.class)
+    public ProblemDetail handleTimeout(QueryTimeoutException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.GATEWAY_TIMEOUT, e.getMessage());
+    }
+    
+    // Conditional GET support: these set ETag / Last-Modified on the response
+    // and, when the client's copy is current, turn it into a 304 before any
+    // entity is loaded or serialized. The suffix keeps strong ETags distinct
+    // between the JSON and protobuf representations.
+    
+    private boolean collectionNotModified(WebRequest request, String suffix) {
+        return request.checkNotModified("\"users-" + userService.getCollectionVersion() + suffix + "\"");
+    }
+    
+    // Only a conditional request pays for the version lookup; a plain GET
+    // takes its validators from the user it loads anyway
+    private boolean userNotModified(Long id, WebRequest request, String suffix) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) == null
+                && request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) == null) {
+            return false;
+        }
+        UserVersion version = userService.getUserVersion(id).orElse(null);
+        if (version == null || version.getVersion() == null) {
+            return false;
+        }
+        String etag = "\"" + version.getVersion() + suffix + "\"";
+        if (version.getUpdatedAt() == null) {
+            return request.checkNotModified(etag);
+        }
+        return request.checkNotModified(etag, version.getUpdatedAt().toEpochMilli());
+    }
+    
+    private static ResponseEntity.BodyBuilder withValidators(User user, String suffix) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (user.getVersion() == null) {
+            return response;
+        }
+        response.eTag("\"" + user.getVersion() + suffix + "\"");
+        if (user.getUpdatedAt() != null) {
+            response.lastModified(user.getUpdatedAt());
+        }
+        return response;
+    }
+    
+    private static ResponseEntity.BodyBuilder withValidators(UserResponse user, String suffix) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag("\"" + user.getVersion() + suffix + "\"");
+        if (user.hasUpdatedAt()) {
+            response.lastModified(UserMapper.toInstant(user.getUpdatedAt()));
+        }
+        return response;
+    }
 }
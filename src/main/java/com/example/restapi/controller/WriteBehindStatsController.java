@@ -0,0 +1,34 @@
+package com.example.restapi.controller;
+
+import com.example.restapi.service.WriteBehindUserWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Write-behind create pipeline: how much is acknowledged but not yet in the
+// database, how old the oldest of it is, and what has been committed so far
+@RestController
+@RequestMapping("/api/write-behind")
+@RequiredArgsConstructor
+public class WriteBehindStatsController {
+    
+    private final WriteBehindUserWriter writeBehind;
+    
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("enabled", writeBehind.isEnabled());
+        body.put("queueDepth", writeBehind.getQueueDepth());
+        body.put("oldestPendingMillis", writeBehind.getOldestPendingMillis());
+        body.put("batchesCommitted", writeBehind.getCommittedBatches());
+        body.put("createsCommitted", writeBehind.getCommittedCreates());
+        body.put("createsDropped", writeBehind.getDroppedCreates());
+        body.put("walBytes", writeBehind.getWalBytes());
+        return ResponseEntity.ok(body);
+    }
+}
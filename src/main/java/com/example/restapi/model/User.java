@@ -1,21 +1,54 @@
 package com.example.restapi.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
+
+// Cached in the second-level cache; READ_WRITE keeps the cached copy in step
+// with committed writes from this JVM
 @Data
 @Entity
 @Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@NaturalIdCache(region = User.NATURAL_ID_CACHE_REGION)
 public class User {
+    
+    public static final String CACHE_REGION = "users";
+    public static final String NATURAL_ID_CACHE_REGION = "users-by-email";
+    public static final String ID_SEQUENCE = "users_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+    
+    // Ids come from a sequence in blocks (pooled-lo: each value hands out
+    // the next ID_ALLOCATION_SIZE ids), which also lets write-behind creates
+    // take ids before their row exists
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     
     @Column(nullable = false)
     private String name;
     
+    @NaturalId(mutable = true)
     @Column(nullable = false, unique = true)
     private String email;
     
     private String phone;
+    
+    // Bumped on every update and used as the resource's strong ETag. Clients
+    // send back the version they read to get a conflict-checked update.
+    @Version
+    private Long version;
+    
+    @UpdateTimestamp
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant updatedAt;
 }
@@ -0,0 +1,155 @@
+package com.example.restapi.repository;
+
+import com.example.restapi.model.User;
+import com.example.restapi.service.UserAlreadyExistsException;
+import com.example.restapi.service.UserNotFoundException;
+import com.example.restapi.service.UserVersionConflictException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.CacheMode;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+// Hibernate over the configured DataSource, with User in the second-level cache.
+// As a @Repository its JPA and Hibernate exceptions are translated into
+// Spring's, so a JDBC statement timeout surfaces as QueryTimeoutException.
+@Repository
+@ConditionalOnProperty(prefix = "user.store", name = "type", havingValue = "jpa", matchIfMissing = true)
+public class JpaUserStore implements UserStore {
+    
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    
+    public JpaUserStore(UserRepository userRepository, EntityManager entityManager,
+                        PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+    
+    @Override
+    public Optional<User> findById(long id) {
+        return userRepository.findById(id);
+    }
+    
+    @Override
+    public List<User> findAllById(List<Long> ids, Duration timeout) {
+        if (timeout == null) {
+            return userRepository.findAllById(ids);
+        }
+        TypedQuery<User> query = entityManager
+            .createQuery("select u from User u where u.id in :ids", User.class)
+            .setParameter("ids", ids);
+        return withTimeout(query, timeout).getResultList();
+    }
+    
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return userRepository.findByEmail(email);
+    }
+    
+    @Override
+    public Optional<UserVersion> findVersionById(long id) {
+        return userRepository.findVersionById(id);
+    }
+    
+    @Override
+    public List<User> findAll() {
+        return userRepository.findAll();
+    }
+    
+    // A keyset page in its own short read-only transaction, so walks built on
+    // it hand the connection back between pages. The rows come back detached.
+    @Override
+    public List<User> findPage(long afterId, int limit, Duration timeout) {
+        return readOnlyTransaction.execute(status -> withTimeout(entityManager
+            .createQuery("select u from User u where u.id > :afterId order by u.id", User.class)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit)
+            .setHint(HibernateHints.HINT_READ_ONLY, true)
+            // A full scan would push every row through the entity cache and
+            // evict the hot ones; read through it but don't fill it
+            .setHint(HibernateHints.HINT_CACHE_MODE, CacheMode.GET), timeout)
+            .getResultList());
+    }
+    
+    // The lookup turns the common duplicate away cheaply; a create racing
+    // with this one for the same email is caught by the unique constraint
+    @Override
+    @Transactional
+    public User insert(User user) {
+        if (userRepository.findByEmail(user.getEmail()).isPresent()) {
+            throw new UserAlreadyExistsException();
+        }
+        user.setVersion(null);
+        try {
+            return userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            throw new UserAlreadyExistsException();
+        }
+    }
+    
+    // The read comes from the second-level cache, and the flush is a single
+    // versioned UPDATE ... WHERE id = ? AND version = ?, so a write racing with
+    // this one is still detected. An email taken by another user fails the
+    // unique constraint.
+    @Override
+    @Transactional
+    public User update(long id, Long expectedVersion, User details) {
+        User user = userRepository.findById(id)
+            .orElseThrow(() -> new UserNotFoundException(id));
+        long expected = expectedVersion != null ? expectedVersion : user.getVersion();
+        if (user.getVersion() != expected) {
+            throw new UserVersionConflictException(id, expected);
+        }
+        user.setName(details.getName());
+        user.setEmail(details.getEmail());
+        user.setPhone(details.getPhone());
+        try {
+            return userRepository.saveAndFlush(user);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new UserVersionConflictException(id, expected);
+        } catch (DataIntegrityViolationException e) {
+            throw new UserAlreadyExistsException();
+        }
+    }
+    
+    @Override
+    @Transactional
+    public boolean delete(long id) {
+        Optional<User> user = userRepository.findById(id);
+        user.ifPresent(userRepository::delete);
+        return user.isPresent();
+    }
+    
+    @Override
+    public boolean supportsWriteBehind() {
+        return true;
+    }
+    
+    // JDBC timeouts are whole seconds and 0 means "none", so partial seconds
+    // are rounded up
+    private static <T> TypedQuery<T> withTimeout(TypedQuery<T> query, Duration timeout) {
+        if (timeout == null) {
+            return query;
+        }
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new QueryTimeoutException("Deadline expired before the query was issued");
+        }
+        long seconds = (timeout.toMillis() + 999) / 1000;
+        return query.setHint(HibernateHints.HINT_TIMEOUT, (int) Math.min(Math.max(seconds, 1), Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.restapi.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Open-addressing hash map from positive {@code long} keys to {@code long}
+ * values, with linear probing and no boxing. Keys and values sit side by side
+ * in {@link LongBuffer} chunks, on the heap or in direct memory; key 0 marks
+ * an empty slot. Removal shifts later entries of the probe run back instead
+ * of leaving tombstones. Not thread safe.
+ */
+class LongLongIndex {
+
+    static final long MISSING = -1;
+
+    private static final long EMPTY = 0;
+    private static final double MAX_LOAD = 0.5;
+    private static final int MAX_CAPACITY = 1 << 30;
+    // 2^26 longs (512 MB) per chunk keeps every chunk addressable by an int
+    private static final int CHUNK_SHIFT = 26;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final boolean direct;
+    private LongBuffer[] chunks;
+    private int capacity;
+    private int mask;
+    private int size;
+
+    LongLongIndex(int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    // A direct index lives outside the heap, so the GC never scans or copies it
+    LongLongIndex(int expectedSize, boolean direct) {
+        this.direct = direct;
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(long key) {
+        for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            long current = key(slot);
+            if (current == key) {
+                return value(slot);
+            }
+            if (current == EMPTY) {
+                return MISSING;
+            }
+        }
+    }
+
+    // Returns the previous value, or MISSING
+    long put(long key, long value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Index keys must be positive, got " + key);
+        }
+        for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            long current = key(slot);
+            if (current == key) {
+                long previous = value(slot);
+                set(slot, key, value);
+                return previous;
+            }
+            if (current == EMPTY) {
+                set(slot, key, value);
+                if (++size > capacity * MAX_LOAD) {
+                    if (capacity == MAX_CAPACITY) {
+                        throw new IllegalStateException("Index is full at " + size + " entries");
+                    }
+                    resize(capacity * 2);
+                }
+                return MISSING;
+            }
+        }
+    }
+
+    // Returns the removed value, or MISSING
+    long remove(long key) {
+        int slot = slotOf(key);
+        while (true) {
+            long current = key(slot);
+            if (current == EMPTY) {
+                return MISSING;
+            }
+            if (current == key) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long removed = value(slot);
+        // Backward-shift: move up any later entry whose home slot is at or
+        // before the hole, so lookups never stop early at it
+        int hole = slot;
+        for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+            long moving = key(next);
+            if (moving == EMPTY) {
+                break;
+            }
+            int home = slotOf(moving);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                set(hole, moving, value(next));
+                hole = next;
+            }
+        }
+        set(hole, EMPTY, 0);
+        size--;
+        return removed;
+    }
+
+    private long key(int slot) {
+        long index = (long) slot << 1;
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    private long value(int slot) {
+        long index = ((long) slot << 1) + 1;
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    // A slot's key and value are adjacent and never straddle two chunks
+    private void set(int slot, long key, long value) {
+        long index = (long) slot << 1;
+        LongBuffer chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+        int offset = (int) (index & CHUNK_MASK);
+        chunk.put(offset, key);
+        chunk.put(offset + 1, value);
+    }
+
+    private void resize(int newCapacity) {
+        LongBuffer[] old = chunks;
+        allocate(newCapacity);
+        size = 0;
+        for (LongBuffer chunk : old) {
+            for (int i = 0; i < chunk.capacity(); i += 2) {
+                long key = chunk.get(i);
+                if (key != EMPTY) {
+                    put(key, chunk.get(i + 1));
+                }
+            }
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        long longs = (long) newCapacity << 1;
+        int chunkLongs = (int) Math.min(longs, 1L << CHUNK_SHIFT);
+        chunks = new LongBuffer[(int) (longs / chunkLongs)];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = direct
+                    ? ByteBuffer.allocateDirect(chunkLongs * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer()
+                    : LongBuffer.allocate(chunkLongs);
+        }
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 8) / MAX_LOAD);
+        return (int) Math.min(Long.highestOneBit(needed - 1) << 1, MAX_CAPACITY);
+    }
+}
@@ -0,0 +1,577 @@
+package com.example.restapi.repository;
+
+import com.example.grpc.user.UserResponse;
+import com.example.restapi.model.User;
+import com.example.restapi.service.UserAlreadyExistsException;
+import com.example.restapi.service.UserNotFoundException;
+import com.example.restapi.service.UserVersionConflictException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static com.example.restapi.repository.UserRecords.CRC;
+import static com.example.restapi.repository.UserRecords.DELETE;
+import static com.example.restapi.repository.UserRecords.ID;
+import static com.example.restapi.repository.UserRecords.LENGTH;
+import static com.example.restapi.repository.UserRecords.PUT;
+import static com.example.restapi.repository.UserRecords.TOMBSTONE_LENGTH;
+import static com.example.restapi.repository.UserRecords.TYPE;
+
+/**
+ * Users kept in an append-only log of memory-mapped segment files. Every
+ * create and update appends the whole record, and a delete appends a
+ * tombstone. A {@link LongLongIndex} maps each id to its latest record
+ * ({@code segment << 32 | offset}), and a map from email to id keeps emails
+ * unique. Both are rebuilt on startup by replaying the segments in order.
+ *
+ * <p>Records are laid out as in {@link UserRecords}. The length is written
+ * last, so replay stops cleanly at a record that was never finished. Writes
+ * land in the page cache, so a process crash loses nothing; a power loss can
+ * lose what the OS had not yet flushed, unless {@code force-on-write} is set.
+ *
+ * <p>A background compactor rewrites sealed segments that are mostly dead
+ * records: live records are copied to the end of the log and the segment file
+ * is deleted. Tombstones are carried forward until they reach the oldest
+ * segment, since an older segment could still hold the record they delete.
+ * The tombstone of the highest id issued so far is always carried forward:
+ * replay takes the next id from the highest id in the log, so dropping it
+ * would hand that id out again after a restart.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "user.store", name = "type", havingValue = "mmap")
+@EnableConfigurationProperties(UserStoreProperties.class)
+public class MappedLogUserStore implements UserStore {
+
+    private static final String SEGMENT_PREFIX = "users-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // Ids a page walks per hold of the read lock
+    static final int PAGE_WALK_CHUNK = 4096;
+
+    private final UserStoreProperties.Mmap properties;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final LongLongIndex index = new LongLongIndex(1024);
+    private final Map<String, Long> emails = new HashMap<>();
+    private Segment active;
+    private long nextId = 1;
+
+    private ScheduledExecutorService compactor;
+
+    private static final class Segment {
+        final int number;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int writePosition;
+        // Bytes of records that have been superseded or deleted
+        long deadBytes;
+        long tombstoneBytes;
+
+        Segment(int number, Path path, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    public MappedLogUserStore(UserStoreProperties properties) {
+        this.properties = properties.getMmap();
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(properties.getDirectory());
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(properties.getDirectory())) {
+            files = listing
+                .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .sorted()
+                .toList();
+        }
+        long start = System.nanoTime();
+        for (Path file : files) {
+            Segment segment = map(file, segmentNumber(file), 0);
+            segments.put(segment.number, segment);
+            replay(segment);
+        }
+        active = segments.isEmpty() ? createSegment(0) : segments.lastEntry().getValue();
+        log.info("Opened user log in {}: {} segments, {} users, {} ms", properties.getDirectory(),
+                segments.size(), index.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        long interval = properties.getCompactionInterval().toMillis();
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        lock.readLock().lock();
+        try {
+            long location = index.get(id);
+            return location == LongLongIndex.MISSING ? Optional.empty() : Optional.of(decode(location));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> findAllById(List<Long> ids, Duration timeout) {
+        checkTimeout(timeout);
+        List<User> users = new ArrayList<>(ids.size());
+        lock.readLock().lock();
+        try {
+            for (Long id : ids) {
+                long location = index.get(id);
+                if (location != LongLongIndex.MISSING) {
+                    users.add(decode(location));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return users;
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        lock.readLock().lock();
+        try {
+            Long id = emails.get(email);
+            return id == null ? Optional.empty() : Optional.of(decode(index.get(id)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<UserVersion> findVersionById(long id) {
+        lock.readLock().lock();
+        try {
+            long location = index.get(id);
+            if (location == LongLongIndex.MISSING) {
+                return Optional.empty();
+            }
+            return Optional.of(UserRecords.versionOf(bufferOf(location), offsetOf(location)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<UserResponse> findResponseById(long id) {
+        lock.readLock().lock();
+        try {
+            long location = index.get(id);
+            return location == LongLongIndex.MISSING
+                    ? Optional.empty()
+                    : Optional.of(UserRecords.toResponse(bufferOf(location), offsetOf(location)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> findAll() {
+        List<User> users = new ArrayList<>();
+        forEach(null, users::add);
+        return users;
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit, Duration timeout) {
+        return page(afterId, limit, timeout, this::decode);
+    }
+
+    // Built straight from the record bytes, with no User in between
+    @Override
+    public List<UserResponse> findResponsePage(long afterId, int limit, Duration timeout) {
+        return page(afterId, limit, timeout,
+                location -> UserRecords.toResponse(bufferOf(location), offsetOf(location)));
+    }
+
+    @Override
+    public User insert(User user) {
+        byte[][] strings = UserRecords.encodeStrings(user);
+        lock.writeLock().lock();
+        try {
+            if (emails.containsKey(user.getEmail())) {
+                throw new UserAlreadyExistsException();
+            }
+            user.setId(nextId++);
+            user.setVersion(0L);
+            user.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+            index.put(user.getId(), appendPut(user, strings));
+            emails.put(user.getEmail(), user.getId());
+            return user;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public User update(long id, Long expectedVersion, User details) {
+        byte[][] strings = UserRecords.encodeStrings(details);
+        lock.writeLock().lock();
+        try {
+            long location = index.get(id);
+            if (location == LongLongIndex.MISSING) {
+                throw new UserNotFoundException(id);
+            }
+            User user = decode(location);
+            long expected = expectedVersion != null ? expectedVersion : user.getVersion();
+            if (user.getVersion() != expected) {
+                throw new UserVersionConflictException(id, expected);
+            }
+            boolean emailChanged = !user.getEmail().equals(details.getEmail());
+            if (emailChanged && emails.containsKey(details.getEmail())) {
+                throw new UserAlreadyExistsException();
+            }
+            user.setName(details.getName());
+            user.setEmail(details.getEmail());
+            user.setPhone(details.getPhone());
+            user.setVersion(user.getVersion() + 1);
+            user.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+            long updated = appendPut(user, strings);
+            markDead(location);
+            index.put(id, updated);
+            if (emailChanged) {
+                emails.remove(readEmail(location));
+                emails.put(user.getEmail(), id);
+            }
+            return user;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(long id) {
+        lock.writeLock().lock();
+        try {
+            long location = index.get(id);
+            if (location == LongLongIndex.MISSING) {
+                return false;
+            }
+            Segment segment = reserve(TOMBSTONE_LENGTH);
+            int offset = segment.writePosition;
+            segment.buffer.put(offset + TYPE, DELETE);
+            segment.buffer.putLong(offset + ID, id);
+            commit(segment, offset, TOMBSTONE_LENGTH);
+            segment.tombstoneBytes += TOMBSTONE_LENGTH;
+            markDead(location);
+            emails.remove(readEmail(location));
+            index.remove(id);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            segments.values().forEach(segment -> segment.buffer.force());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rewrites the sealed segment with the largest share of dead records, if
+    // that share is over the threshold. Live records move one at a time under
+    // the write lock, so readers and writers only ever wait for one copy.
+    void compact() throws IOException {
+        Segment victim;
+        boolean oldest;
+        lock.writeLock().lock();
+        try {
+            victim = compactionCandidate();
+            if (victim == null) {
+                return;
+            }
+            oldest = victim.number == segments.firstKey();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long moved = 0;
+        int end = victim.writePosition;
+        for (int offset = 0; offset < end; ) {
+            int length = victim.buffer.getInt(offset + LENGTH);
+            long id = victim.buffer.getLong(offset + ID);
+            long location = locationOf(victim, offset);
+            lock.writeLock().lock();
+            try {
+                if (victim.buffer.get(offset + TYPE) == PUT) {
+                    if (index.get(id) == location) {
+                        index.put(id, copy(victim, offset, length));
+                        moved += length;
+                    }
+                } else if (!oldest || id == nextId - 1) {
+                    segments.get(segmentOf(copy(victim, offset, length))).tombstoneBytes += length;
+                    moved += length;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            offset += length;
+        }
+
+        lock.writeLock().lock();
+        try {
+            segments.remove(victim.number);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Files.deleteIfExists(victim.path);
+        log.info("Compacted user log segment {}: kept {} of {} bytes", victim.number, moved, end);
+    }
+
+    // Ids are handed out in increasing order, so a page is a walk up the id
+    // range from afterId, looking each one up in place. A long run of deleted
+    // ids is walked PAGE_WALK_CHUNK ids per hold of the read lock, with the
+    // deadline checked in between, so it neither stalls writers nor runs on
+    // past the deadline.
+    private <T> List<T> page(long afterId, int limit, Duration timeout, LongFunction<T> read) {
+        checkTimeout(timeout);
+        long deadline = timeout == null ? 0 : System.nanoTime() + timeout.toNanos();
+        List<T> page = new ArrayList<>(Math.min(limit, 1024));
+        long id = afterId + 1;
+        while (true) {
+            boolean more;
+            lock.readLock().lock();
+            try {
+                long end = Math.min(nextId, id + PAGE_WALK_CHUNK);
+                for (; id < end && page.size() < limit; id++) {
+                    long location = index.get(id);
+                    if (location != LongLongIndex.MISSING) {
+                        page.add(read.apply(location));
+                    }
+                }
+                more = id < nextId && page.size() < limit;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (!more) {
+                return page;
+            }
+            if (timeout != null && System.nanoTime() - deadline >= 0) {
+                throw new QueryTimeoutException("Deadline expired during the read");
+            }
+        }
+    }
+
+    private void compactSafely() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.warn("User log compaction failed", e);
+        }
+    }
+
+    private Segment compactionCandidate() {
+        Segment best = null;
+        double bestShare = properties.getCompactionThreshold();
+        for (Segment segment : segments.values()) {
+            if (segment == active || segment.writePosition == 0) {
+                continue;
+            }
+            long reclaimable = segment.deadBytes;
+            if (segment.number == segments.firstKey()) {
+                reclaimable += segment.tombstoneBytes;
+            }
+            double share = (double) reclaimable / segment.writePosition;
+            if (share >= bestShare) {
+                best = segment;
+                bestShare = share;
+            }
+        }
+        return best;
+    }
+
+    private void replay(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + TOMBSTONE_LENGTH <= buffer.capacity()) {
+            int length = buffer.getInt(offset + LENGTH);
+            if (length == 0) {
+                break;
+            }
+            if (length < TOMBSTONE_LENGTH || offset + length > buffer.capacity()
+                    || buffer.getInt(offset + CRC) != crc(buffer, offset, length)) {
+                log.warn("Ignoring torn or corrupt record at {}:{}; zeroing the rest of the segment",
+                        segment.path, offset);
+                for (int i = offset; i < buffer.capacity(); i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                break;
+            }
+            long id = buffer.getLong(offset + ID);
+            long location = locationOf(segment, offset);
+            long previous = buffer.get(offset + TYPE) == PUT ? index.put(id, location) : index.remove(id);
+            if (previous != LongLongIndex.MISSING) {
+                markDead(previous);
+                emails.remove(readEmail(previous));
+            }
+            if (buffer.get(offset + TYPE) == PUT) {
+                emails.put(readEmail(location), id);
+            } else {
+                segment.tombstoneBytes += length;
+            }
+            // Compaction keeps the highest id's record, live or tombstone
+            nextId = Math.max(nextId, id + 1);
+            offset += length;
+        }
+        segment.writePosition = offset;
+    }
+
+    private long appendPut(User user, byte[][] strings) {
+        int length = UserRecords.putLength(strings);
+        Segment segment = reserve(length);
+        int offset = segment.writePosition;
+        UserRecords.writePut(segment.buffer, offset, user, strings);
+        return commit(segment, offset, length);
+    }
+
+    private long copy(Segment source, int sourceOffset, int length) {
+        Segment segment = reserve(length);
+        int offset = segment.writePosition;
+        segment.buffer.put(offset + CRC, source.buffer, sourceOffset + CRC, length - CRC);
+        segment.buffer.putInt(offset + LENGTH, length);
+        if (properties.isForceOnWrite()) {
+            segment.buffer.force(offset, length);
+        }
+        segment.writePosition += length;
+        return locationOf(segment, offset);
+    }
+
+    // Seals the header once the body is in place; the length goes last
+    private long commit(Segment segment, int offset, int length) {
+        ByteBuffer buffer = segment.buffer;
+        buffer.putInt(offset + CRC, crc(buffer, offset, length));
+        buffer.putInt(offset + LENGTH, length);
+        if (properties.isForceOnWrite()) {
+            segment.buffer.force(offset, length);
+        }
+        segment.writePosition += length;
+        return locationOf(segment, offset);
+    }
+
+    // Returns the segment to append length bytes to, rolling to a new one
+    // when the active segment is full
+    private Segment reserve(int length) {
+        if (length > properties.getSegmentBytes()) {
+            throw new IllegalArgumentException("User record of " + length + " bytes exceeds the segment size");
+        }
+        if (active.writePosition + length > active.buffer.capacity()) {
+            try {
+                active.buffer.force();
+                active = createSegment(active.number + 1);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return active;
+    }
+
+    private Segment createSegment(int number) throws IOException {
+        Path path = properties.getDirectory().resolve(String.format("%s%010d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        Segment segment = map(path, number, properties.getSegmentBytes());
+        segments.put(number, segment);
+        return segment;
+    }
+
+    private static Segment map(Path path, int number, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = Math.max(channel.size(), size);
+            return new Segment(number, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+        }
+    }
+
+    private void markDead(long location) {
+        Segment segment = segments.get(segmentOf(location));
+        segment.deadBytes += segment.buffer.getInt(offsetOf(location) + LENGTH);
+    }
+
+    private User decode(long location) {
+        return UserRecords.decode(bufferOf(location), offsetOf(location));
+    }
+
+    private String readEmail(long location) {
+        return UserRecords.readEmail(bufferOf(location), offsetOf(location));
+    }
+
+    private ByteBuffer bufferOf(long location) {
+        return segments.get(segmentOf(location)).buffer;
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + TYPE, length - TYPE));
+        return (int) crc.getValue();
+    }
+
+    private static void checkTimeout(Duration timeout) {
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new QueryTimeoutException("Deadline expired before the read was issued");
+        }
+    }
+
+    private static long locationOf(Segment segment, int offset) {
+        return ((long) segment.number << 32) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    private static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
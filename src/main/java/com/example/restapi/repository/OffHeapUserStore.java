@@ -0,0 +1,486 @@
+package com.example.restapi.repository;
+
+import com.example.grpc.user.UserResponse;
+import com.example.restapi.model.User;
+import com.example.restapi.service.UserAlreadyExistsException;
+import com.example.restapi.service.UserNotFoundException;
+import com.example.restapi.service.UserVersionConflictException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+
+/**
+ * In-memory users kept outside the Java heap, for read-mostly deployments
+ * with tens of millions of users. Records ({@link UserRecords} layout) are
+ * appended to direct {@link ByteBuffer} slabs. Two direct
+ * {@link LongLongIndex}es find them: id to {@code slab << 32 | offset}, and a
+ * 63-bit hash of the email's UTF-8 bytes to id. A hash hit is confirmed by
+ * comparing the stored email bytes, and the rare second email with the same
+ * hash goes to a small on-heap overflow map. The heap holds a few objects
+ * per slab, however many users there are.
+ *
+ * <p>Protobuf responses are built straight from the slab bytes. An update
+ * appends a new record, and a background compactor copies the live records
+ * out of mostly-dead slabs and reuses them. Nothing survives a restart.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "user.store", name = "type", havingValue = "offheap")
+@EnableConfigurationProperties(UserStoreProperties.class)
+public class OffHeapUserStore implements UserStore {
+
+    // Ids a page walks per hold of the read lock
+    static final int PAGE_WALK_CHUNK = 4096;
+
+    private final UserStoreProperties.Offheap properties;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final List<Slab> slabs = new ArrayList<>();
+    private final Deque<Slab> freeSlabs = new ArrayDeque<>();
+    private final LongLongIndex ids;
+    private final LongLongIndex emailHashes;
+    private final Map<String, Long> emailOverflow = new HashMap<>();
+    private Slab active;
+    private long nextId = 1;
+
+    private ScheduledExecutorService compactor;
+
+    private static final class Slab {
+        final int number;
+        final ByteBuffer buffer;
+        int writePosition;
+        // Bytes of records that have been superseded or deleted
+        long deadBytes;
+
+        Slab(int number, ByteBuffer buffer) {
+            this.number = number;
+            this.buffer = buffer;
+        }
+    }
+
+    public OffHeapUserStore(UserStoreProperties properties) {
+        this.properties = properties.getOffheap();
+        this.ids = new LongLongIndex(this.properties.getExpectedUsers(), true);
+        this.emailHashes = new LongLongIndex(this.properties.getExpectedUsers(), true);
+    }
+
+    @PostConstruct
+    public void start() {
+        active = newSlab();
+        long interval = properties.getCompactionInterval().toMillis();
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-slab-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        lock.readLock().lock();
+        try {
+            long location = ids.get(id);
+            return location == LongLongIndex.MISSING ? Optional.empty() : Optional.of(decode(location));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<UserResponse> findResponseById(long id) {
+        lock.readLock().lock();
+        try {
+            long location = ids.get(id);
+            return location == LongLongIndex.MISSING
+                    ? Optional.empty()
+                    : Optional.of(UserRecords.toResponse(bufferOf(location), offsetOf(location)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> findAllById(List<Long> idList, Duration timeout) {
+        checkTimeout(timeout);
+        List<User> users = new ArrayList<>(idList.size());
+        lock.readLock().lock();
+        try {
+            for (Long id : idList) {
+                long location = ids.get(id);
+                if (location != LongLongIndex.MISSING) {
+                    users.add(decode(location));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return users;
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        byte[] bytes = UserRecords.bytes(email);
+        lock.readLock().lock();
+        try {
+            long id = idOfEmail(email, bytes);
+            return id == LongLongIndex.MISSING ? Optional.empty() : Optional.of(decode(ids.get(id)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<UserVersion> findVersionById(long id) {
+        lock.readLock().lock();
+        try {
+            long location = ids.get(id);
+            return location == LongLongIndex.MISSING
+                    ? Optional.empty()
+                    : Optional.of(UserRecords.versionOf(bufferOf(location), offsetOf(location)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> findAll() {
+        List<User> users = new ArrayList<>();
+        forEach(null, users::add);
+        return users;
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit, Duration timeout) {
+        return page(afterId, limit, timeout, this::decode);
+    }
+
+    // Built straight from the record bytes, with no User in between
+    @Override
+    public List<UserResponse> findResponsePage(long afterId, int limit, Duration timeout) {
+        return page(afterId, limit, timeout,
+                location -> UserRecords.toResponse(bufferOf(location), offsetOf(location)));
+    }
+
+    @Override
+    public User insert(User user) {
+        Objects.requireNonNull(user.getEmail(), "email");
+        byte[][] strings = UserRecords.encodeStrings(user);
+        byte[] email = strings[1];
+        lock.writeLock().lock();
+        try {
+            if (idOfEmail(user.getEmail(), email) != LongLongIndex.MISSING) {
+                throw new UserAlreadyExistsException();
+            }
+            user.setId(nextId++);
+            user.setVersion(0L);
+            user.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+            ids.put(user.getId(), append(user, strings));
+            addEmail(user.getEmail(), email, user.getId());
+            return user;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public User update(long id, Long expectedVersion, User details) {
+        Objects.requireNonNull(details.getEmail(), "email");
+        byte[][] strings = UserRecords.encodeStrings(details);
+        byte[] email = strings[1];
+        lock.writeLock().lock();
+        try {
+            long location = ids.get(id);
+            if (location == LongLongIndex.MISSING) {
+                throw new UserNotFoundException(id);
+            }
+            User user = decode(location);
+            long expected = expectedVersion != null ? expectedVersion : user.getVersion();
+            if (user.getVersion() != expected) {
+                throw new UserVersionConflictException(id, expected);
+            }
+            String oldEmail = user.getEmail();
+            boolean emailChanged = !oldEmail.equals(details.getEmail());
+            if (emailChanged && idOfEmail(details.getEmail(), email) != LongLongIndex.MISSING) {
+                throw new UserAlreadyExistsException();
+            }
+            user.setName(details.getName());
+            user.setEmail(details.getEmail());
+            user.setPhone(details.getPhone());
+            user.setVersion(user.getVersion() + 1);
+            user.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+            long updated = append(user, strings);
+            if (emailChanged) {
+                removeEmail(oldEmail, id);
+                addEmail(user.getEmail(), email, id);
+            }
+            markDead(location);
+            ids.put(id, updated);
+            return user;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(long id) {
+        lock.writeLock().lock();
+        try {
+            long location = ids.get(id);
+            if (location == LongLongIndex.MISSING) {
+                return false;
+            }
+            removeEmail(UserRecords.readEmail(bufferOf(location), offsetOf(location)), id);
+            markDead(location);
+            ids.remove(id);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Copies the live records out of the full slab with the largest share of
+    // dead ones, if that share is over the threshold, and frees the slab for
+    // reuse. Records move one at a time under the write lock.
+    void compact() {
+        Slab victim;
+        lock.writeLock().lock();
+        try {
+            victim = compactionCandidate();
+            if (victim == null) {
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long moved = 0;
+        int end = victim.writePosition;
+        for (int offset = 0; offset < end; ) {
+            int length = UserRecords.length(victim.buffer, offset);
+            long id = UserRecords.id(victim.buffer, offset);
+            lock.writeLock().lock();
+            try {
+                if (ids.get(id) == locationOf(victim, offset)) {
+                    Slab slab = reserve(length);
+                    int target = slab.writePosition;
+                    slab.buffer.put(target, victim.buffer, offset, length);
+                    slab.writePosition += length;
+                    ids.put(id, locationOf(slab, target));
+                    moved += length;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            offset += length;
+        }
+
+        lock.writeLock().lock();
+        try {
+            victim.writePosition = 0;
+            victim.deadBytes = 0;
+            freeSlabs.push(victim);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Compacted user slab {}: kept {} of {} bytes", victim.number, moved, end);
+    }
+
+    private void compactSafely() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.warn("User slab compaction failed", e);
+        }
+    }
+
+    private Slab compactionCandidate() {
+        Slab best = null;
+        double bestShare = properties.getCompactionThreshold();
+        for (Slab slab : slabs) {
+            if (slab == active || slab.writePosition == 0) {
+                continue;
+            }
+            double share = (double) slab.deadBytes / slab.writePosition;
+            if (share >= bestShare) {
+                best = slab;
+                bestShare = share;
+            }
+        }
+        return best;
+    }
+
+    // Ids are handed out in increasing order, so a page is a walk up the id
+    // range from afterId, looking each one up in place. A long run of deleted
+    // ids is walked PAGE_WALK_CHUNK ids per hold of the read lock, with the
+    // deadline checked in between, so it neither stalls writers nor runs on
+    // past the deadline.
+    private <T> List<T> page(long afterId, int limit, Duration timeout, LongFunction<T> read) {
+        checkTimeout(timeout);
+        long deadline = timeout == null ? 0 : System.nanoTime() + timeout.toNanos();
+        List<T> page = new ArrayList<>(Math.min(limit, 1024));
+        long id = afterId + 1;
+        while (true) {
+            boolean more;
+            lock.readLock().lock();
+            try {
+                long end = Math.min(nextId, id + PAGE_WALK_CHUNK);
+                for (; id < end && page.size() < limit; id++) {
+                    long location = ids.get(id);
+                    if (location != LongLongIndex.MISSING) {
+                        page.add(read.apply(location));
+                    }
+                }
+                more = id < nextId && page.size() < limit;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (!more) {
+                return page;
+            }
+            if (timeout != null && System.nanoTime() - deadline >= 0) {
+                throw new QueryTimeoutException("Deadline expired during the read");
+            }
+        }
+    }
+
+    // The hash index answers almost every lookup; the stored bytes confirm it
+    private long idOfEmail(String email, byte[] bytes) {
+        Long overflow = emailOverflow.get(email);
+        if (overflow != null) {
+            return overflow;
+        }
+        long id = emailHashes.get(emailHash(bytes));
+        if (id == LongLongIndex.MISSING) {
+            return LongLongIndex.MISSING;
+        }
+        long location = ids.get(id);
+        return UserRecords.emailEquals(bufferOf(location), offsetOf(location), bytes) ? id : LongLongIndex.MISSING;
+    }
+
+    private void addEmail(String email, byte[] bytes, long id) {
+        long hash = emailHash(bytes);
+        if (emailHashes.get(hash) == LongLongIndex.MISSING) {
+            emailHashes.put(hash, id);
+        } else {
+            emailOverflow.put(email, id);
+        }
+    }
+
+    private void removeEmail(String email, long id) {
+        if (emailOverflow.remove(email, id)) {
+            return;
+        }
+        long hash = emailHash(UserRecords.bytes(email));
+        if (emailHashes.get(hash) == id) {
+            emailHashes.remove(hash);
+        }
+    }
+
+    private long append(User user, byte[][] strings) {
+        int length = UserRecords.putLength(strings);
+        Slab slab = reserve(length);
+        int offset = slab.writePosition;
+        UserRecords.writePut(slab.buffer, offset, user, strings);
+        slab.buffer.putInt(offset + UserRecords.LENGTH, length);
+        slab.writePosition += length;
+        return locationOf(slab, offset);
+    }
+
+    private Slab reserve(int length) {
+        if (length > properties.getSlabBytes()) {
+            throw new IllegalArgumentException("User record of " + length + " bytes exceeds the slab size");
+        }
+        if (active.writePosition + length > active.buffer.capacity()) {
+            active = newSlab();
+        }
+        return active;
+    }
+
+    private Slab newSlab() {
+        Slab free = freeSlabs.poll();
+        if (free != null) {
+            return free;
+        }
+        Slab slab = new Slab(slabs.size(), ByteBuffer.allocateDirect(properties.getSlabBytes()));
+        slabs.add(slab);
+        return slab;
+    }
+
+    private void markDead(long location) {
+        Slab slab = slabs.get(slabOf(location));
+        slab.deadBytes += UserRecords.length(slab.buffer, offsetOf(location));
+    }
+
+    private User decode(long location) {
+        return UserRecords.decode(bufferOf(location), offsetOf(location));
+    }
+
+    private ByteBuffer bufferOf(long location) {
+        return slabs.get(slabOf(location)).buffer;
+    }
+
+    // FNV-1a, then a final mix; kept positive for the index. Tests override
+    // it to force collisions onto the overflow map.
+    long emailHash(byte[] email) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : email) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash &= Long.MAX_VALUE;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static void checkTimeout(Duration timeout) {
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new QueryTimeoutException("Deadline expired before the read was issued");
+        }
+    }
+
+    private static long locationOf(Slab slab, int offset) {
+        return ((long) slab.number << 32) | offset;
+    }
+
+    private static int slabOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+}
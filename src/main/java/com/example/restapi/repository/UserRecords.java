@@ -0,0 +1,165 @@
+package com.example.restapi.repository;
+
+import com.example.grpc.user.UserResponse;
+import com.example.mapping.UserMapper;
+import com.example.restapi.model.User;
+import com.google.protobuf.ByteString;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Binary user record shared by the buffer-backed stores:
+ * {@code [length][crc32][type][id][version][updatedAt micros][name][email][phone]},
+ * each string an int byte count (-1 for null) followed by its UTF-8 bytes.
+ * A DELETE record stops after the id. Everything is read with absolute
+ * gets, so any number of readers can share a buffer.
+ */
+final class UserRecords {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    static final int LENGTH = 0;
+    static final int CRC = 4;
+    static final int TYPE = 8;
+    static final int ID = 9;
+    static final int VERSION = 17;
+    static final int UPDATED_AT = 25;
+    static final int STRINGS = 33;
+    static final int TOMBSTONE_LENGTH = ID + 8;
+
+    private record Version(Long version, Instant updatedAt) implements UserVersion {
+        @Override
+        public Long getVersion() {
+            return version;
+        }
+
+        @Override
+        public Instant getUpdatedAt() {
+            return updatedAt;
+        }
+    }
+
+    private UserRecords() {
+    }
+
+    static byte[][] encodeStrings(User user) {
+        return new byte[][] {
+            bytes(user.getName()), bytes(user.getEmail()), bytes(user.getPhone())
+        };
+    }
+
+    static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int putLength(byte[][] strings) {
+        int length = STRINGS;
+        for (byte[] string : strings) {
+            length += 4 + (string == null ? 0 : string.length);
+        }
+        return length;
+    }
+
+    // Writes everything but the length and checksum
+    static void writePut(ByteBuffer buffer, int offset, User user, byte[][] strings) {
+        buffer.put(offset + TYPE, PUT);
+        buffer.putLong(offset + ID, user.getId());
+        buffer.putLong(offset + VERSION, user.getVersion());
+        buffer.putLong(offset + UPDATED_AT, micros(user.getUpdatedAt()));
+        int position = offset + STRINGS;
+        for (byte[] string : strings) {
+            buffer.putInt(position, string == null ? -1 : string.length);
+            if (string != null) {
+                buffer.put(position + 4, string);
+            }
+            position += 4 + (string == null ? 0 : string.length);
+        }
+    }
+
+    static int length(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + LENGTH);
+    }
+
+    static long id(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + ID);
+    }
+
+    static long version(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + VERSION);
+    }
+
+    static Instant updatedAt(ByteBuffer buffer, int offset) {
+        return Instant.EPOCH.plus(buffer.getLong(offset + UPDATED_AT), ChronoUnit.MICROS);
+    }
+
+    static UserVersion versionOf(ByteBuffer buffer, int offset) {
+        return new Version(version(buffer, offset), updatedAt(buffer, offset));
+    }
+
+    static User decode(ByteBuffer buffer, int offset) {
+        User user = new User();
+        user.setId(id(buffer, offset));
+        user.setVersion(version(buffer, offset));
+        user.setUpdatedAt(updatedAt(buffer, offset));
+        int position = offset + STRINGS;
+        user.setName(readString(buffer, position));
+        position += stringLength(buffer, position);
+        user.setEmail(readString(buffer, position));
+        position += stringLength(buffer, position);
+        user.setPhone(readString(buffer, position));
+        return user;
+    }
+
+    // The strings go into the message as UTF-8 bytes, never becoming Strings
+    static UserResponse toResponse(ByteBuffer buffer, int offset) {
+        UserResponse.Builder response = UserResponse.newBuilder()
+                .setId(id(buffer, offset))
+                .setVersion(version(buffer, offset))
+                .setUpdatedAt(UserMapper.toTimestamp(updatedAt(buffer, offset)));
+        int position = offset + STRINGS;
+        response.setNameBytes(byteString(buffer, position));
+        position += stringLength(buffer, position);
+        response.setEmailBytes(byteString(buffer, position));
+        position += stringLength(buffer, position);
+        return response.setPhoneBytes(byteString(buffer, position)).build();
+    }
+
+    static String readEmail(ByteBuffer buffer, int offset) {
+        int position = offset + STRINGS;
+        return readString(buffer, position + stringLength(buffer, position));
+    }
+
+    static boolean emailEquals(ByteBuffer buffer, int offset, byte[] email) {
+        int position = offset + STRINGS;
+        position += stringLength(buffer, position);
+        return buffer.getInt(position) == email.length
+                && buffer.slice(position + 4, email.length).equals(ByteBuffer.wrap(email));
+    }
+
+    static long micros(Instant instant) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+
+    private static String readString(ByteBuffer buffer, int position) {
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteString byteString(ByteBuffer buffer, int position) {
+        int length = buffer.getInt(position);
+        return length <= 0 ? ByteString.EMPTY : ByteString.copyFrom(buffer.slice(position + 4, length));
+    }
+
+    private static int stringLength(ByteBuffer buffer, int position) {
+        return 4 + Math.max(buffer.getInt(position), 0);
+    }
+}
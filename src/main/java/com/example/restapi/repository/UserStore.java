@@ -0,0 +1,102 @@
+package com.example.restapi.repository;
+
+import com.example.grpc.user.UserResponse;
+import com.example.mapping.UserMapper;
+import com.example.restapi.model.User;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Storage behind {@link com.example.restapi.service.UserService}, picked with
+ * {@code user.store.type}: {@code jpa} (the default, {@link JpaUserStore}) or
+ * {@code mmap} ({@link MappedLogUserStore}).
+ *
+ * <p>Each write is atomic on its own. The store assigns ids, bumps versions,
+ * stamps {@code updatedAt} and keeps emails unique. A null timeout leaves a
+ * read unbounded; an expired one fails with Spring's QueryTimeoutException.
+ */
+public interface UserStore {
+    
+    // Rows per read when walking every user
+    int SCAN_PAGE_SIZE = 500;
+    
+    Optional<User> findById(long id);
+    
+    // Unknown ids are left out
+    List<User> findAllById(List<Long> ids, Duration timeout);
+    
+    Optional<User> findByEmail(String email);
+    
+    Optional<UserVersion> findVersionById(long id);
+    
+    List<User> findAll();
+    
+    // Stores that hold users in serialized form build the response from the
+    // stored bytes, skipping the User object and its Strings
+    default Optional<UserResponse> findResponseById(long id) {
+        return findById(id).map(UserMapper::toUserResponse);
+    }
+    
+    // Up to limit users with ids above afterId, in id order
+    List<User> findPage(long afterId, int limit, Duration timeout);
+    
+    default List<UserResponse> findResponsePage(long afterId, int limit, Duration timeout) {
+        return findPage(afterId, limit, timeout).stream().map(UserMapper::toUserResponse).toList();
+    }
+    
+    // Visits users in id order until the action returns false; returns
+    // whether every user was visited. Users are read a page at a time and
+    // the action runs between reads, so a slow action holds no transaction,
+    // connection or lock. The timeout bounds the whole walk. It is not a
+    // snapshot: users created or deleted during the walk may or may not be
+    // seen.
+    default boolean forEach(Duration timeout, Predicate<User> action) {
+        return forEachPage(timeout, (afterId, remaining) -> findPage(afterId, SCAN_PAGE_SIZE, remaining),
+                User::getId, action);
+    }
+    
+    default boolean forEachResponse(Duration timeout, Predicate<UserResponse> action) {
+        return forEachPage(timeout, (afterId, remaining) -> findResponsePage(afterId, SCAN_PAGE_SIZE, remaining),
+                UserResponse::getId, action);
+    }
+    
+    // Throws UserAlreadyExistsException if the email is taken
+    User insert(User user);
+    
+    // Applies name, email and phone if the stored version is expectedVersion
+    // (null: whatever is current). Throws UserNotFoundException,
+    // UserVersionConflictException or UserAlreadyExistsException.
+    User update(long id, Long expectedVersion, User details);
+    
+    // Returns false if there was no such user
+    boolean delete(long id);
+    
+    // Write-behind inserts rows itself and takes ids from the users sequence
+    default boolean supportsWriteBehind() {
+        return false;
+    }
+    
+    private <T> boolean forEachPage(Duration timeout, BiFunction<Long, Duration, List<T>> readPage,
+                                    ToLongFunction<T> idOf, Predicate<T> action) {
+        long deadline = timeout == null ? 0 : System.nanoTime() + timeout.toNanos();
+        long afterId = 0;
+        while (true) {
+            Duration remaining = timeout == null ? null : Duration.ofNanos(deadline - System.nanoTime());
+            List<T> page = readPage.apply(afterId, remaining);
+            for (T row : page) {
+                if (!action.test(row)) {
+                    return false;
+                }
+            }
+            if (page.size() < SCAN_PAGE_SIZE) {
+                return true;
+            }
+            afterId = idOf.applyAsLong(page.get(page.size() - 1));
+        }
+    }
+}
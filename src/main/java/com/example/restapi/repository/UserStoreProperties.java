@@ -0,0 +1,52 @@
+package com.example.restapi.repository;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Storage selection and the settings of the buffer-backed stores. Both keep
+ * records in fixed-size segments ({@code segmentBytes} files for mmap,
+ * {@code slabBytes} direct buffers for offheap); a full segment is rewritten
+ * once at least {@code compactionThreshold} of it is dead records, checked
+ * every {@code compactionInterval}.
+ */
+@Data
+@ConfigurationProperties(prefix = "user.store")
+public class UserStoreProperties {
+    
+    // jpa, mmap or offheap
+    private String type = "jpa";
+    
+    private Mmap mmap = new Mmap();
+    
+    private Offheap offheap = new Offheap();
+    
+    @Data
+    public static class Mmap {
+        private Path directory = Path.of("data", "users");
+        
+        private int segmentBytes = 64 * 1024 * 1024;
+        
+        private double compactionThreshold = 0.5;
+        
+        private Duration compactionInterval = Duration.ofSeconds(30);
+        
+        // Force every write to disk instead of leaving it to the page cache
+        private boolean forceOnWrite = false;
+    }
+    
+    @Data
+    public static class Offheap {
+        // Sizes the indexes up front, so loading doesn't rehash them
+        private int expectedUsers = 1_000_000;
+        
+        private int slabBytes = 64 * 1024 * 1024;
+        
+        private double compactionThreshold = 0.5;
+        
+        private Duration compactionInterval = Duration.ofSeconds(30);
+    }
+}
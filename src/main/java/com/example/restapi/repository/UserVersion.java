@@ -0,0 +1,10 @@
+package com.example.restapi.repository;
+
+import java.time.Instant;
+
+// Projection used to answer conditional requests without loading the entity
+public interface UserVersion {
+    Long getVersion();
+    
+    Instant getUpdatedAt();
+}
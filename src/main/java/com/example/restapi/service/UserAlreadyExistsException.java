@@ -0,0 +1,9 @@
+package com.example.restapi.service;
+
+public class UserAlreadyExistsException extends UserException {
+    
+    @Override
+    public String getMessage() {
+        return "User with email already exists";
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.restapi.service;
+
+import com.example.restapi.model.User;
+import com.example.restapi.repository.JpaUserStore;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills the second-level cache on startup, so a restart against a large
+ * file database serves its hot users from memory straight away instead of
+ * faulting them in one request at a time. The id range of the newest
+ * {@code maxUsers} users is split between {@code threads} workers, each
+ * reading its slice in its own read-only transaction with
+ * {@link CacheMode#PUT}. Loading an entity also caches its email to id
+ * resolution, and the reads pull the table's pages into H2's page cache.
+ *
+ * <p>Runs as a {@link SmartLifecycle} in a phase ahead of the web server's
+ * and the gRPC server's, so neither starts listening until the cache is
+ * warm. The mmap and offheap stores rebuild their own indexes when they
+ * open, and have no cache to warm.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "user.warmup", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(UserWarmupProperties.class)
+@RequiredArgsConstructor
+public class UserCacheWarmer implements SmartLifecycle {
+    
+    // Tomcat starts in phase Integer.MAX_VALUE - 2048 and the gRPC server in
+    // Integer.MAX_VALUE
+    private static final int PHASE = 0;
+    
+    private final UserWarmupProperties properties;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ObjectProvider<JpaUserStore> jpaUserStore;
+    
+    private volatile boolean running;
+    
+    @Override
+    public void start() {
+        running = true;
+        if (jpaUserStore.getIfAvailable() == null || properties.getMaxUsers() <= 0) {
+            return;
+        }
+        try {
+            warmUp();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cache warm-up failed", e.getCause());
+        }
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+    
+    private void warmUp() throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        IdRange range = newestIdRange();
+        if (range == null) {
+            return;
+        }
+        long from = range.from();
+        long to = range.to();
+        int threads = (int) Math.max(1, Math.min(properties.getThreads(), to - from + 1));
+        long step = (to - from) / threads + 1;
+        
+        AtomicInteger worker = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                r -> new Thread(r, "user-warmup-" + worker.incrementAndGet()));
+        try {
+            List<Callable<Integer>> slices = new ArrayList<>(threads);
+            for (long lo = from; lo <= to; lo += step) {
+                long sliceFrom = lo;
+                long sliceTo = Math.min(lo + step - 1, to);
+                slices.add(() -> warm(sliceFrom, sliceTo));
+            }
+            int loaded = 0;
+            for (Future<Integer> slice : executor.invokeAll(slices)) {
+                loaded += slice.get();
+            }
+            log.info("Warmed {} users into the second-level cache with {} threads in {} ms",
+                    loaded, threads, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private record IdRange(long from, long to) {
+    }
+    
+    // Ids come from a sequence, so the newest users are those from the
+    // maxUsers-th highest id up. Both ends are read off the primary key
+    // index; null when there are no users.
+    private IdRange newestIdRange() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Long to = entityManager
+                .createQuery("select max(u.id) from User u", Long.class)
+                .getSingleResult();
+            if (to == null) {
+                return null;
+            }
+            List<Long> boundary = entityManager
+                .createQuery("select u.id from User u order by u.id desc", Long.class)
+                .setFirstResult(properties.getMaxUsers() - 1)
+                .setMaxResults(1)
+                .getResultList();
+            long from = !boundary.isEmpty() ? boundary.get(0) : entityManager
+                .createQuery("select min(u.id) from User u", Long.class)
+                .getSingleResult();
+            return new IdRange(from, to);
+        } finally {
+            entityManager.close();
+        }
+    }
+    
+    private int warm(long from, long to) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            int loaded = entityManager
+                .createQuery("select u from User u where u.id between :from and :to", User.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setHint(HibernateHints.HINT_CACHE_MODE, CacheMode.PUT)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, 500)
+                .getResultList()
+                .size();
+            entityManager.getTransaction().commit();
+            return loaded;
+        } finally {
+            entityManager.close();
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.restapi.service;
+
+// Published by UserService for every create, update and delete
+public record UserChangedEvent(long id, Long version, boolean deleted) {
+}
@@ -0,0 +1,14 @@
+package com.example.restapi.service;
+
+/**
+ * Base for the expected outcomes of a user operation (a missing id, a taken
+ * email, a stale version). They are part of normal traffic rather than bugs,
+ * so no stack trace is captured and the message is only built if asked for;
+ * the gRPC and REST layers map each subtype to a status code.
+ */
+public abstract class UserException extends RuntimeException {
+    
+    protected UserException() {
+        super(null, null, false, false);
+    }
+}
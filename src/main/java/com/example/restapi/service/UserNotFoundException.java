@@ -0,0 +1,19 @@
+package com.example.restapi.service;
+
+public class UserNotFoundException extends UserException {
+    
+    private final long id;
+    
+    public UserNotFoundException(long id) {
+        this.id = id;
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    @Override
+    public String getMessage() {
+        return "User not found with id: " + id;
+    }
+}
@@ -1,48 +1,181 @@
 package com.example.restapi.service;
 
+import com.example.grpc.user.UserResponse;
+import com.example.mapping.UserMapper;
 import com.example.restapi.model.User;
-import com.example.restapi.repository.UserRepository;
+import com.example.restapi.repository.UserStore;
+import com.example.restapi.repository.UserVersion;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
     
-    private final UserRepository userRepository;
+    private final UserStore userStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final WriteBehindUserWriter writeBehind;
+    
+    // Table-level version for conditional GETs on the collection. It is only
+    // bumped once the store has committed a write, and the startup epoch
+    // keeps versions from a previous run from ever matching.
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong collectionVersion = new AtomicLong();
+    
+    @PostConstruct
+    void registerWriteBehind() {
+        if (writeBehind.isEnabled() && !userStore.supportsWriteBehind()) {
+            throw new IllegalStateException("user.write-behind needs user.store.type=jpa");
+        }
+        writeBehind.onCommit(this::writeBehindCommitted);
+    }
+    
+    // Read this before loading the collection, so a concurrent commit can only
+    // make the response look older than it is, never newer
+    public String getCollectionVersion() {
+        return epoch + "-" + collectionVersion.get();
+    }
+    
+    public Optional<UserVersion> getUserVersion(Long id) {
+        return userStore.findVersionById(id);
+    }
     
     public List<User> getAllUsers() {
-        return userRepository.findAll();
+        return userStore.findAll();
+    }
+    
+    public List<User> getUsersByIds(List<Long> ids) {
+        return getUsersByIds(ids, null);
+    }
+    
+    // Same lookup with the statement bounded by the caller's remaining time
+    public List<User> getUsersByIds(List<Long> ids, Duration timeout) {
+        return withPending(ids, stored -> userStore.findAllById(stored, timeout));
+    }
+    
+    public void forEachUser(Consumer<User> action) {
+        forEachUser(null, user -> {
+            action.accept(user);
+            return true;
+        });
+    }
+    
+    // Visits every user in id order, stopping as soon as the action returns
+    // false; returns whether every user was visited. Write-behind creates
+    // only show up here once their batch has committed.
+    public boolean forEachUser(Duration timeout, Predicate<User> action) {
+        return userStore.forEach(timeout, action);
+    }
+    
+    // Same visit with each user already in its protobuf form
+    public boolean forEachUserResponse(Duration timeout, Predicate<UserResponse> action) {
+        return userStore.forEachResponse(timeout, action);
+    }
+    
+    // One page of that walk, for callers that pace the walk themselves
+    public List<UserResponse> getUserResponsePage(long afterId, int limit, Duration timeout) {
+        return userStore.findResponsePage(afterId, limit, timeout);
+    }
+    
+    public UserResponse getUserResponse(Long id) {
+        User pending = writeBehind.getPending(id);
+        if (pending != null) {
+            return UserMapper.toUserResponse(pending);
+        }
+        return userStore.findResponseById(id)
+            .orElseThrow(() -> new UserNotFoundException(id));
     }
     
     public User getUserById(Long id) {
-        return userRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
+        User pending = writeBehind.getPending(id);
+        if (pending != null) {
+            return pending;
+        }
+        return userStore.findById(id)
+            .orElseThrow(() -> new UserNotFoundException(id));
     }
     
-    @Transactional
     public User createUser(User user) {
-        if (userRepository.findByEmail(user.getEmail()).isPresent()) {
-            throw new RuntimeException("User with email already exists");
+        if (writeBehind.isEnabled()) {
+            if (userStore.findByEmail(user.getEmail()).isPresent()) {
+                throw new UserAlreadyExistsException();
+            }
+            // Acknowledged once logged; events follow the batch commit
+            return writeBehind.submit(user);
         }
-        return userRepository.save(user);
+        User savedUser = userStore.insert(user);
+        collectionVersion.incrementAndGet();
+        eventPublisher.publishEvent(new UserChangedEvent(savedUser.getId(), savedUser.getVersion(), false));
+        return savedUser;
     }
     
-    @Transactional
+    // Callers that don't send a version update whatever is current. With
+    // write-behind, a new email is held until the update commits, so a create
+    // can't be acknowledged with it meanwhile and dropped at its commit.
     public User updateUser(Long id, User userDetails) {
-        User user = getUserById(id);
-        user.setName(userDetails.getName());
-        user.setEmail(userDetails.getEmail());
-        user.setPhone(userDetails.getPhone());
-        return userRepository.save(user);
+        writeBehind.awaitCommitted(id);
+        String email = userDetails.getEmail();
+        boolean reserved = writeBehind.isEnabled() && !getUserById(id).getEmail().equals(email);
+        if (reserved && !writeBehind.reserveEmail(email)) {
+            throw new UserAlreadyExistsException();
+        }
+        try {
+            User user = userStore.update(id, userDetails.getVersion(), userDetails);
+            collectionVersion.incrementAndGet();
+            eventPublisher.publishEvent(new UserChangedEvent(id, user.getVersion(), false));
+            return user;
+        } finally {
+            if (reserved) {
+                writeBehind.releaseEmail(email);
+            }
+        }
     }
     
-    @Transactional
     public void deleteUser(Long id) {
-        User user = getUserById(id);
-        userRepository.delete(user);
+        writeBehind.awaitCommitted(id);
+        if (!userStore.delete(id)) {
+            throw new UserNotFoundException(id);
+        }
+        collectionVersion.incrementAndGet();
+        eventPublisher.publishEvent(new UserChangedEvent(id, null, true));
+    }
+    
+    private void writeBehindCommitted(List<User> users) {
+        collectionVersion.incrementAndGet();
+        for (User user : users) {
+            eventPublisher.publishEvent(new UserChangedEvent(user.getId(), user.getVersion(), false));
+        }
+    }
+    
+    // Ids still queued for write-behind are answered from memory
+    private List<User> withPending(List<Long> ids, Function<List<Long>, List<User>> load) {
+        if (!writeBehind.hasPending()) {
+            return load.apply(ids);
+        }
+        List<User> users = new ArrayList<>(ids.size());
+        List<Long> stored = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User pending = writeBehind.getPending(id);
+            if (pending != null) {
+                users.add(pending);
+            } else {
+                stored.add(id);
+            }
+        }
+        if (!stored.isEmpty()) {
+            users.addAll(load.apply(stored));
+        }
+        return users;
     }
 }
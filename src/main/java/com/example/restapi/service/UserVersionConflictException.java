@@ -0,0 +1,25 @@
+package com.example.restapi.service;
+
+public class UserVersionConflictException extends UserException {
+    
+    private final long id;
+    private final long expectedVersion;
+    
+    public UserVersionConflictException(long id, long expectedVersion) {
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+    
+    @Override
+    public String getMessage() {
+        return "User " + id + " is no longer at version " + expectedVersion;
+    }
+}
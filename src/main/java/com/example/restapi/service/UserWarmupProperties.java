@@ -0,0 +1,22 @@
+package com.example.restapi.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Startup warm-up of the second-level cache. Up to {@code maxUsers} of the
+ * newest users are loaded by {@code threads} parallel range reads before the
+ * web and gRPC servers start listening.
+ */
+@Data
+@ConfigurationProperties(prefix = "user.warmup")
+public class UserWarmupProperties {
+    
+    private boolean enabled = false;
+    
+    private int threads = Runtime.getRuntime().availableProcessors();
+    
+    // The users region holds 50000 entries (application.conf); loading more
+    // would only evict what was just loaded
+    private int maxUsers = 50_000;
+}
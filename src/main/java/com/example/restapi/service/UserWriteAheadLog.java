@@ -0,0 +1,226 @@
+package com.example.restapi.service;
+
+import com.example.restapi.model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of acknowledged but not yet committed creates, split into
+ * segment files named after the first sequence number they may hold. Each
+ * record is {@code [length][crc32][payload]}; a torn or corrupt tail is
+ * ignored on replay. Segments are deleted once every record in them is
+ * committed, and the active one is emptied once everything appended is, so
+ * a clean shutdown leaves nothing to replay.
+ *
+ * <p>Appends go to the OS page cache, so a process crash loses nothing;
+ * {@link #sync()} forces them to disk, which bounds what a power loss can
+ * take to the records appended since the last sync.
+ */
+class UserWriteAheadLog implements AutoCloseable {
+    
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    
+    record Entry(long seq, User user) {
+    }
+    
+    private record Segment(long firstSeq, Path path) {
+    }
+    
+    private final Path directory;
+    private final long segmentBytes;
+    
+    // Guarded by this
+    private final List<Segment> closedSegments = new ArrayList<>();
+    private Segment activeSegment;
+    private FileChannel active;
+    private long nextSeq;
+    
+    UserWriteAheadLog(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+    
+    // Every intact record in every segment, in append order
+    synchronized List<Entry> readAll() throws IOException {
+        Files.createDirectories(directory);
+        List<Entry> entries = new ArrayList<>();
+        for (Segment segment : listSegments()) {
+            readSegment(segment.path(), entries);
+        }
+        return entries;
+    }
+    
+    // Drops all existing segments and starts a fresh one at firstSeq
+    synchronized void reset(long firstSeq) throws IOException {
+        closeActive();
+        for (Segment segment : listSegments()) {
+            Files.delete(segment.path());
+        }
+        closedSegments.clear();
+        nextSeq = firstSeq;
+        openSegment();
+    }
+    
+    synchronized long append(User user) {
+        try {
+            if (active.position() >= segmentBytes) {
+                active.force(false);
+                closeActive();
+                closedSegments.add(activeSegment);
+                openSegment();
+            }
+            long seq = nextSeq++;
+            byte[] payload = encode(seq, user);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                    .putInt(payload.length)
+                    .putInt((int) crc.getValue())
+                    .put(payload)
+                    .flip();
+            while (buffer.hasRemaining()) {
+                active.write(buffer);
+            }
+            return seq;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to the write-ahead log", e);
+        }
+    }
+    
+    synchronized void sync() throws IOException {
+        active.force(false);
+    }
+    
+    // Deletes closed segments whose records are all at or below committedSeq,
+    // and empties the active one if that covers every record appended; a
+    // closed segment ends where the next one starts
+    synchronized void release(long committedSeq) throws IOException {
+        while (!closedSegments.isEmpty()) {
+            long end = closedSegments.size() > 1 ? closedSegments.get(1).firstSeq() : activeSegment.firstSeq();
+            if (end - 1 > committedSeq) {
+                return;
+            }
+            Files.deleteIfExists(closedSegments.remove(0).path());
+        }
+        if (committedSeq >= nextSeq - 1 && active.size() > 0) {
+            active.truncate(0);
+            active.force(false);
+        }
+    }
+    
+    synchronized long sizeBytes() {
+        long bytes = 0;
+        try {
+            for (Segment segment : closedSegments) {
+                bytes += Files.size(segment.path());
+            }
+            return bytes + active.size();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.force(false);
+            closeActive();
+        }
+    }
+    
+    private void openSegment() throws IOException {
+        activeSegment = new Segment(nextSeq, directory.resolve(String.format("%s%020d%s", PREFIX, nextSeq, SUFFIX)));
+        active = FileChannel.open(activeSegment.path(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    
+    private void closeActive() throws IOException {
+        if (active != null) {
+            active.close();
+            active = null;
+        }
+    }
+    
+    private List<Segment> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .map(path -> {
+                        String name = path.getFileName().toString();
+                        return new Segment(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), path);
+                    })
+                    .toList();
+        }
+    }
+    
+    private static void readSegment(Path path, List<Entry> entries) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        while (data.remaining() >= HEADER_BYTES) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length <= 0 || length > data.remaining()) {
+                return;
+            }
+            byte[] payload = new byte[length];
+            data.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                return;
+            }
+            entries.add(decode(payload));
+        }
+    }
+    
+    private static byte[] encode(long seq, User user) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(seq);
+            out.writeLong(user.getId());
+            out.writeLong(ChronoUnit.MICROS.between(Instant.EPOCH, user.getUpdatedAt()));
+            out.writeUTF(user.getName());
+            out.writeUTF(user.getEmail());
+            out.writeBoolean(user.getPhone() != null);
+            if (user.getPhone() != null) {
+                out.writeUTF(user.getPhone());
+            }
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static Entry decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            long seq = in.readLong();
+            User user = new User();
+            user.setId(in.readLong());
+            user.setUpdatedAt(Instant.EPOCH.plus(in.readLong(), ChronoUnit.MICROS));
+            user.setName(in.readUTF());
+            user.setEmail(in.readUTF());
+            user.setPhone(in.readBoolean() ? in.readUTF() : null);
+            user.setVersion(0L);
+            return new Entry(seq, user);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.restapi.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Opt-in write-behind for creates. A create is acknowledged once it is in
+ * the write-ahead log and the in-memory queue; a committer inserts queued
+ * creates in batches of up to {@code batchSize}, one transaction per batch,
+ * at most {@code maxLatency} after the oldest was queued.
+ */
+@Data
+@ConfigurationProperties(prefix = "user.write-behind")
+public class WriteBehindProperties {
+    
+    private boolean enabled = false;
+    
+    private Duration maxLatency = Duration.ofMillis(20);
+    
+    private int batchSize = 500;
+    
+    // Creates block once this many are waiting for the database
+    private int queueCapacity = 100_000;
+    
+    private Path walDirectory = Path.of("data", "wal");
+    
+    private long walSegmentBytes = 64L * 1024 * 1024;
+}
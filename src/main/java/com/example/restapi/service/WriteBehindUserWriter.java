@@ -0,0 +1,447 @@
+package com.example.restapi.service;
+
+import com.example.restapi.model.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind for {@link UserService#createUser}. When enabled, a create
+ * takes an id from the users sequence, is appended to the write-ahead log and
+ * queued, and is acknowledged straight away. A single committer thread
+ * drains the queue into batched INSERTs, one transaction per batch, and
+ * records the last committed log sequence number in the same transaction.
+ *
+ * <p>Until its batch commits, a queued user is served from memory by id and
+ * its email counts as taken; scans only see it afterwards. On startup any
+ * logged create past the checkpoint is replayed, so a crash loses none that
+ * reached the log. The checkpoint has to survive the restart too, so the
+ * writer refuses to start on an in-memory database.
+ *
+ * <p>A create can still be lost after it was acknowledged: if its email was
+ * taken between the acknowledgement and the commit (by an update, or by a
+ * create on another instance sharing the database), the unique constraint
+ * rejects it. The batch is then retried row by row, and each create that
+ * still fails is dropped, logged at ERROR and counted in
+ * {@link #getDroppedCreates()}. Replay after a crash drops such creates the
+ * same way. Updates hold a changed email through {@link #reserveEmail}
+ * until they commit, so on one instance they can't cause this.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(WriteBehindProperties.class)
+public class WriteBehindUserWriter {
+
+    private static final String INSERT_SQL =
+            "insert into users (id, name, email, phone, version, updated_at) values (?, ?, ?, ?, 0, ?)";
+    private static final String INSERT_IF_ABSENT_SQL =
+            "insert into users (id, name, email, phone, version, updated_at) select ?, ?, ?, ?, 0, ? "
+                    + "where not exists (select 1 from users where id = ?)";
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    // pendingEmails value for an email held by an update rather than a create
+    private static final long RESERVED_FOR_UPDATE = -1;
+
+    private record Pending(long seq, User user, long queuedAt) {
+    }
+
+    private final WriteBehindProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final Map<Long, Pending> pendingById = new ConcurrentHashMap<>();
+    private final Map<String, Long> pendingEmails = new ConcurrentHashMap<>();
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+    private final Object appendLock = new Object();
+    private final Object commitMonitor = new Object();
+
+    private final AtomicLong committedBatches = new AtomicLong();
+    private final AtomicLong committedCreates = new AtomicLong();
+    private final AtomicLong droppedCreates = new AtomicLong();
+
+    private UserWriteAheadLog wal;
+    private Thread committer;
+    private volatile boolean running;
+    private volatile long committedSeq;
+    // Queue time of the batch the committer is gathering or writing
+    private volatile Pending inFlight;
+    private volatile Consumer<List<User>> onCommit = users -> {
+    };
+
+    // Guarded by this
+    private long nextId;
+    private long idLimit;
+
+    public WriteBehindUserWriter(WriteBehindProperties properties, JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 EntityManagerFactory entityManagerFactory) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManagerFactory = entityManagerFactory;
+        this.capacity = new Semaphore(properties.getQueueCapacity());
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    // Called with each committed batch, on the committer thread
+    public void onCommit(Consumer<List<User>> listener) {
+        this.onCommit = listener;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        String url = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getURL());
+        if (url != null && url.startsWith("jdbc:h2:mem:")) {
+            throw new IllegalStateException("user.write-behind.enabled needs a persistent database, not " + url
+                    + ": the checkpoint would be lost on restart and committed creates replayed again");
+        }
+        jdbcTemplate.execute("create table if not exists user_wal_checkpoint (id int primary key, seq bigint not null)");
+        wal = new UserWriteAheadLog(properties.getWalDirectory(), properties.getWalSegmentBytes());
+        long lastSeq = recover();
+        wal.reset(lastSeq + 1);
+        committedSeq = lastSeq;
+        running = true;
+        committer = new Thread(this::runCommitter, "user-write-behind");
+        committer.start();
+        log.info("Write-behind creates enabled: batch size {}, max latency {}, log in {}",
+                properties.getBatchSize(), properties.getMaxLatency(), properties.getWalDirectory());
+    }
+
+    /**
+     * Assigns the user an id and queues it, returning once it is in the
+     * write-ahead log. Blocks while the queue is at capacity.
+     */
+    public User submit(User user) {
+        if (pendingEmails.putIfAbsent(user.getEmail(), 0L) != null) {
+            throw new UserAlreadyExistsException();
+        }
+        boolean queued = false;
+        try {
+            capacity.acquire();
+            try {
+                user.setId(nextId());
+                user.setVersion(0L);
+                user.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+                synchronized (appendLock) {
+                    Pending pending = new Pending(wal.append(user), user, System.nanoTime());
+                    pendingById.put(user.getId(), pending);
+                    pendingEmails.put(user.getEmail(), user.getId());
+                    queue.add(pending);
+                }
+                queued = true;
+                return user;
+            } finally {
+                if (!queued) {
+                    capacity.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for write-behind capacity", e);
+        } finally {
+            if (!queued) {
+                pendingEmails.remove(user.getEmail(), 0L);
+            }
+        }
+    }
+
+    public User getPending(long id) {
+        Pending pending = pendingById.get(id);
+        return pending != null ? pending.user() : null;
+    }
+
+    public boolean hasPending() {
+        return !pendingById.isEmpty();
+    }
+
+    /**
+     * Holds an email for an update until {@link #releaseEmail} is called once
+     * the update has committed, so no create can be acknowledged with it in
+     * between and dropped later. Returns false if a queued create or another
+     * update already holds it.
+     */
+    public boolean reserveEmail(String email) {
+        return pendingEmails.putIfAbsent(email, RESERVED_FOR_UPDATE) == null;
+    }
+
+    public void releaseEmail(String email) {
+        pendingEmails.remove(email, RESERVED_FOR_UPDATE);
+    }
+
+    // Waits until a queued create of this id is in the database, so an update
+    // or delete of it finds the row
+    public void awaitCommitted(long id) {
+        Pending pending = pendingById.get(id);
+        if (pending == null) {
+            return;
+        }
+        synchronized (commitMonitor) {
+            while (committedSeq < pending.seq() && pendingById.containsKey(id)) {
+                try {
+                    commitMonitor.wait(properties.getMaxLatency().toMillis() + 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for write-behind commit", e);
+                }
+            }
+        }
+    }
+
+    // Acknowledged creates not yet committed, including the batch in flight
+    public int getQueueDepth() {
+        return pendingById.size();
+    }
+
+    public long getOldestPendingMillis() {
+        Pending oldest = inFlight;
+        if (oldest == null) {
+            oldest = queue.peek();
+        }
+        return oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.queuedAt());
+    }
+
+    public long getCommittedBatches() {
+        return committedBatches.get();
+    }
+
+    public long getCommittedCreates() {
+        return committedCreates.get();
+    }
+
+    public long getDroppedCreates() {
+        return droppedCreates.get();
+    }
+
+    public long getWalBytes() {
+        return wal != null ? wal.sizeBytes() : 0;
+    }
+
+    // Same block allocation as Hibernate's pooled-lo optimizer, so ids never
+    // collide with creates that go through JPA
+    private synchronized long nextId() {
+        if (nextId == idLimit) {
+            nextId = jdbcTemplate.queryForObject("select next value for " + User.ID_SEQUENCE, Long.class);
+            idLimit = nextId + User.ID_ALLOCATION_SIZE;
+        }
+        return nextId++;
+    }
+
+    private void runCommitter() {
+        long maxLatencyNanos = properties.getMaxLatency().toNanos();
+        List<Pending> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                inFlight = first;
+                long deadline = first.queuedAt() + maxLatencyNanos;
+                while (batch.size() < properties.getBatchSize()) {
+                    long wait = deadline - System.nanoTime();
+                    Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+                batch.clear();
+                inFlight = null;
+            } catch (InterruptedException e) {
+                // Shutdown: the loop drains what is left
+                running = false;
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) throws InterruptedException {
+        try {
+            wal.sync();
+        } catch (IOException e) {
+            log.error("Could not sync the write-ahead log; creates in this batch are not yet durable", e);
+        }
+        long lastSeq = batch.get(batch.size() - 1).seq();
+        List<User> committed = new ArrayList<>(batch.size());
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (statement, pending) -> {
+                        User user = pending.user();
+                        statement.setLong(1, user.getId());
+                        statement.setString(2, user.getName());
+                        statement.setString(3, user.getEmail());
+                        statement.setString(4, user.getPhone());
+                        statement.setTimestamp(5, Timestamp.from(user.getUpdatedAt()));
+                    });
+                    saveCheckpoint(lastSeq);
+                });
+                batch.forEach(pending -> committed.add(pending.user()));
+                break;
+            } catch (DataIntegrityViolationException e) {
+                // Typically an email taken by an update since this create was
+                // accepted; commit the rest one by one and drop the ones that
+                // still fail
+                insertIndividually(batch, committed);
+                transactionTemplate.executeWithoutResult(status -> saveCheckpoint(lastSeq));
+                break;
+            } catch (RuntimeException e) {
+                log.warn("Write-behind batch of {} failed, retrying: {}", batch.size(), e.getMessage());
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            }
+        }
+        // Cached "no such email / id" query results may now be wrong
+        entityManagerFactory.getCache().unwrap(Cache.class).evictDefaultQueryRegion();
+
+        for (Pending pending : batch) {
+            pendingById.remove(pending.user().getId());
+            pendingEmails.remove(pending.user().getEmail(), pending.user().getId());
+        }
+        capacity.release(batch.size());
+        synchronized (commitMonitor) {
+            committedSeq = lastSeq;
+            commitMonitor.notifyAll();
+        }
+        try {
+            wal.release(lastSeq);
+        } catch (IOException e) {
+            log.warn("Could not delete committed write-ahead log segments", e);
+        }
+        committedBatches.incrementAndGet();
+        committedCreates.addAndGet(committed.size());
+        onCommit.accept(committed);
+    }
+
+    private void insertIndividually(List<Pending> batch, List<User> committed) {
+        for (Pending pending : batch) {
+            User user = pending.user();
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_SQL,
+                        user.getId(), user.getName(), user.getEmail(), user.getPhone(),
+                        Timestamp.from(user.getUpdatedAt())));
+                committed.add(user);
+            } catch (DataIntegrityViolationException e) {
+                droppedCreates.incrementAndGet();
+                log.error("Dropping acknowledged create of user {} <{}>: {}",
+                        user.getId(), user.getEmail(), e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private void saveCheckpoint(long seq) {
+        jdbcTemplate.update("merge into user_wal_checkpoint key (id) values (1, ?)", seq);
+    }
+
+    // Replays logged creates past the checkpoint; returns the last logged seq.
+    // A create whose email was taken before the crash is dropped as it would
+    // have been at commit, so the log can never keep the service from starting.
+    private long recover() throws IOException {
+        List<Long> checkpoints = jdbcTemplate.queryForList(
+                "select seq from user_wal_checkpoint where id = 1", Long.class);
+        long checkpoint = checkpoints.isEmpty() ? 0 : checkpoints.get(0);
+        List<UserWriteAheadLog.Entry> entries = wal.readAll();
+        List<UserWriteAheadLog.Entry> replay = entries.stream()
+                .filter(entry -> entry.seq() > checkpoint)
+                .toList();
+        long lastSeq = entries.isEmpty() ? checkpoint : Math.max(checkpoint, entries.get(entries.size() - 1).seq());
+        if (replay.isEmpty()) {
+            return lastSeq;
+        }
+        int dropped = 0;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_IF_ABSENT_SQL, replay, replay.size(),
+                        (statement, entry) -> bindIfAbsent(statement, entry.user()));
+                saveCheckpoint(lastSeq);
+            });
+        } catch (DataIntegrityViolationException e) {
+            for (UserWriteAheadLog.Entry entry : replay) {
+                User user = entry.user();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_IF_ABSENT_SQL,
+                            statement -> bindIfAbsent(statement, user)));
+                } catch (DataIntegrityViolationException conflict) {
+                    dropped++;
+                    log.error("Dropping logged create of user {} <{}> on replay: {}",
+                            user.getId(), user.getEmail(), conflict.getMostSpecificCause().getMessage());
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> saveCheckpoint(lastSeq));
+        }
+        droppedCreates.addAndGet(dropped);
+        // The ids were drawn from the sequence before the crash, but an
+        // increment isn't part of any committed transaction, so make sure the
+        // sequence is past them
+        long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from users", Long.class);
+        long current = jdbcTemplate.queryForObject(
+                "select base_value from information_schema.sequences where lower(sequence_name) = ?",
+                Long.class, User.ID_SEQUENCE);
+        if (current <= maxId) {
+            jdbcTemplate.execute("alter sequence " + User.ID_SEQUENCE + " restart with " + (maxId + 1));
+        }
+        entityManagerFactory.getCache().unwrap(Cache.class).evictDefaultQueryRegion();
+        log.info("Replayed {} write-behind creates from the write-ahead log, dropped {}",
+                replay.size() - dropped, dropped);
+        return lastSeq;
+    }
+
+    private static void bindIfAbsent(PreparedStatement statement, User user) throws SQLException {
+        statement.setLong(1, user.getId());
+        statement.setString(2, user.getName());
+        statement.setString(3, user.getEmail());
+        statement.setString(4, user.getPhone());
+        statement.setTimestamp(5, Timestamp.from(user.getUpdatedAt()));
+        statement.setLong(6, user.getId());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (committer == null) {
+            return;
+        }
+        running = false;
+        committer.join();
+        try {
+            wal.release(committedSeq);
+            wal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
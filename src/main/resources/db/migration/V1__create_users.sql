@@ -0,0 +1,19 @@
+-- Matches the User entity; ids come from users_seq in pooled-lo blocks of 50
+create sequence users_seq start with 1 increment by 50;
+
+create table users (
+    id bigint not null,
+    name varchar(255) not null,
+    email varchar(255) not null,
+    phone varchar(255),
+    version bigint,
+    updated_at timestamp(6) with time zone,
+    primary key (id),
+    constraint uk_users_email unique (email)
+);
+
+-- Last write-behind log sequence number committed to users
+create table user_wal_checkpoint (
+    id int primary key,
+    seq bigint not null
+);
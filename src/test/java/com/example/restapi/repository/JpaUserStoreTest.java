@@ -0,0 +1,71 @@
+package com.example.restapi.repository;
+
+import com.example.grpc.service.StatusMapper;
+import com.example.restapi.model.User;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.dao.PersistenceExceptionTranslationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The application context translates persistence exceptions; a JPA slice
+// doesn't unless asked
+@DataJpaTest
+@ImportAutoConfiguration(PersistenceExceptionTranslationAutoConfiguration.class)
+@Import(JpaUserStore.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JpaUserStoreTest {
+
+    @Autowired
+    private UserStore store;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void expiredDeadlineFailsWithoutQuerying() {
+        assertThatThrownBy(() -> store.findAllById(List.of(1L), Duration.ZERO))
+                .isInstanceOf(QueryTimeoutException.class)
+                .satisfies(e -> assertThat(status(e)).isEqualTo(Status.Code.DEADLINE_EXCEEDED));
+    }
+
+    @Test
+    void statementTimeoutIsTranslated() {
+        User user = new User();
+        user.setName("slow");
+        user.setEmail("slow@example.com");
+        store.insert(user);
+        // Every read of users now walks a billion-row range, far past the
+        // one second JDBC timeout the half-second deadline is rounded up to
+        jdbc.execute("alter table users rename to user_rows");
+        jdbc.execute("create view users as select u.* from user_rows u, system_range(1, 1000000000) r "
+                + "where mod(r.x, 1000000000) = 0");
+        try {
+            assertThatThrownBy(() -> store.findPage(0, 10, Duration.ofMillis(500)))
+                    .isInstanceOf(QueryTimeoutException.class)
+                    .satisfies(e -> assertThat(status(e)).isEqualTo(Status.Code.DEADLINE_EXCEEDED));
+        } finally {
+            jdbc.execute("drop view users");
+            jdbc.execute("alter table user_rows rename to users");
+        }
+    }
+
+    private static Status.Code status(Throwable e) {
+        Throwable mapped = StatusMapper.toStatusException(e);
+        assertThat(mapped).isInstanceOf(StatusRuntimeException.class);
+        return ((StatusRuntimeException) mapped).getStatus().getCode();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.restapi.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongLongIndexTest {
+    
+    @Test
+    void putGetAndRemove() {
+        LongLongIndex index = new LongLongIndex(8);
+        
+        assertThat(index.put(7, 70)).isEqualTo(LongLongIndex.MISSING);
+        assertThat(index.put(7, 71)).isEqualTo(70);
+        assertThat(index.get(7)).isEqualTo(71);
+        assertThat(index.remove(7)).isEqualTo(71);
+        assertThat(index.remove(7)).isEqualTo(LongLongIndex.MISSING);
+        assertThat(index.get(7)).isEqualTo(LongLongIndex.MISSING);
+        assertThat(index.size()).isZero();
+    }
+    
+    // Removals in the middle of probe runs, wrapping around the end of the
+    // table, must leave every remaining key reachable
+    @Test
+    void backwardShiftKeepsProbeRunsIntact() {
+        checkAgainstHashMap(new LongLongIndex(8));
+    }
+    
+    @Test
+    void backwardShiftKeepsProbeRunsIntactInDirectMemory() {
+        checkAgainstHashMap(new LongLongIndex(8, true));
+    }
+    
+    private static void checkAgainstHashMap(LongLongIndex index) {
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // A small key range keeps the table small and the runs long
+            long key = 1 + random.nextInt(64);
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertThat(index.remove(key)).isEqualTo(removed == null ? LongLongIndex.MISSING : removed);
+            } else {
+                long value = random.nextLong() & Long.MAX_VALUE;
+                Long previous = expected.put(key, value);
+                assertThat(index.put(key, value)).isEqualTo(previous == null ? LongLongIndex.MISSING : previous);
+            }
+            if (i % 1000 == 0) {
+                for (long k = 1; k <= 64; k++) {
+                    assertThat(index.get(k)).isEqualTo(expected.getOrDefault(k, LongLongIndex.MISSING));
+                }
+            }
+        }
+        assertThat(index.size()).isEqualTo(expected.size());
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.restapi.repository;
+
+import com.example.restapi.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedLogUserStoreTest {
+    
+    private static final int SEGMENT_BYTES = 512;
+    
+    @TempDir
+    Path directory;
+    
+    private final List<MappedLogUserStore> opened = new ArrayList<>();
+    
+    @AfterEach
+    void closeStores() {
+        opened.forEach(MappedLogUserStore::close);
+    }
+    
+    @Test
+    void replayRestoresUsersUpdatesAndDeletes() throws IOException {
+        MappedLogUserStore store = open();
+        long alice = store.insert(user("alice")).getId();
+        long bob = store.insert(user("bob")).getId();
+        store.update(alice, 0L, user("alice2"));
+        store.delete(bob);
+        store.close();
+        
+        MappedLogUserStore reopened = open();
+        assertThat(reopened.findById(alice)).get()
+                .satisfies(user -> {
+                    assertThat(user.getEmail()).isEqualTo("alice2@example.com");
+                    assertThat(user.getVersion()).isEqualTo(1L);
+                });
+        assertThat(reopened.findById(bob)).isEmpty();
+        assertThat(reopened.findByEmail("bob@example.com")).isEmpty();
+        assertThat(reopened.findByEmail("alice@example.com")).isEmpty();
+    }
+    
+    @Test
+    void replayStopsAtATornRecordAndKeepsAppending() throws IOException {
+        MappedLogUserStore store = open();
+        store.insert(user("first"));
+        store.insert(user("second"));
+        long torn = store.insert(user("third")).getId();
+        store.close();
+        
+        // Damage the last record's body, as if the write never finished
+        Path segment = segmentFiles().get(0);
+        int last = recordOffsets(segment).get(2);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), last + UserRecords.STRINGS + 4);
+        }
+        
+        MappedLogUserStore reopened = open();
+        assertThat(reopened.findAll()).extracting(User::getName).containsExactly("first", "second");
+        assertThat(reopened.findById(torn)).isEmpty();
+        long fourth = reopened.insert(user("fourth")).getId();
+        reopened.close();
+        
+        // The rest of the segment was zeroed, so the new record replays
+        assertThat(open().findById(fourth)).get().extracting(User::getName).isEqualTo("fourth");
+    }
+    
+    @Test
+    void compactionDropsDeadRecordsAndKeepsLiveOnes() throws IOException {
+        MappedLogUserStore store = open();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ids.add(store.insert(user("user" + i)).getId());
+        }
+        for (int i = 0; i < 20; i += 2) {
+            store.delete(ids.get(i));
+        }
+        store.update(ids.get(1), 0L, user("renamed"));
+        int before = segmentFiles().size();
+        
+        for (int i = 0; i < before; i++) {
+            store.compact();
+        }
+        
+        assertThat(segmentFiles()).hasSizeLessThan(before);
+        assertThat(Files.exists(directory.resolve("users-0000000000.log"))).isFalse();
+        assertLiveUsers(store, ids);
+        store.close();
+        assertLiveUsers(open(), ids);
+    }
+    
+    @Test
+    void idsOfDeletedUsersAreNotReusedAfterCompaction() throws IOException {
+        MappedLogUserStore store = open();
+        for (int i = 0; i < 4; i++) {
+            store.insert(user("user" + i));
+        }
+        long highest = store.insert(user("highest")).getId();
+        store.delete(highest);
+        // Roll the log over a few segments without issuing more ids
+        long first = store.findByEmail("user0@example.com").orElseThrow().getId();
+        for (int version = 0; version < 40; version++) {
+            store.update(first, (long) version, user("user0"));
+        }
+        for (int i = 0; i < 20; i++) {
+            store.compact();
+        }
+        assertThat(Files.exists(directory.resolve("users-0000000000.log"))).isFalse();
+        store.close();
+        
+        assertThat(open().insert(user("next")).getId()).isGreaterThan(highest);
+    }
+    
+    private static void assertLiveUsers(MappedLogUserStore store, List<Long> ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            if (i % 2 == 0) {
+                assertThat(store.findById(ids.get(i))).isEmpty();
+            } else {
+                assertThat(store.findById(ids.get(i))).get().extracting(User::getName)
+                        .isEqualTo(i == 1 ? "renamed" : "user" + i);
+            }
+        }
+        assertThat(store.findAll()).hasSize(ids.size() / 2);
+    }
+    
+    private MappedLogUserStore open() throws IOException {
+        UserStoreProperties properties = new UserStoreProperties();
+        properties.getMmap().setDirectory(directory);
+        properties.getMmap().setSegmentBytes(SEGMENT_BYTES);
+        properties.getMmap().setCompactionThreshold(0);
+        // The tests compact by hand
+        properties.getMmap().setCompactionInterval(Duration.ofHours(1));
+        MappedLogUserStore store = new MappedLogUserStore(properties);
+        store.open();
+        opened.add(store);
+        return store;
+    }
+    
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+    
+    private static List<Integer> recordOffsets(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        List<Integer> offsets = new ArrayList<>();
+        for (int offset = 0; offset + UserRecords.TOMBSTONE_LENGTH <= buffer.capacity(); ) {
+            int length = buffer.getInt(offset + UserRecords.LENGTH);
+            if (length == 0) {
+                break;
+            }
+            offsets.add(offset);
+            offset += length;
+        }
+        return offsets;
+    }
+    
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(name + "@example.com");
+        user.setPhone("555-0100");
+        return user;
+    }
+}
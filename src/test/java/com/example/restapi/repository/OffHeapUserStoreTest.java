@@ -0,0 +1,158 @@
+package com.example.restapi.repository;
+
+import com.example.grpc.user.UserResponse;
+import com.example.restapi.model.User;
+import com.example.restapi.service.UserAlreadyExistsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OffHeapUserStoreTest {
+
+    private static final int SLAB_BYTES = 512;
+
+    private final List<OffHeapUserStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void stopStores() {
+        opened.forEach(OffHeapUserStore::stop);
+    }
+
+    @Test
+    void collidingEmailsAreToldApart() {
+        OffHeapUserStore store = open(SLAB_BYTES, true);
+        long alice = store.insert(user("alice")).getId();
+        long bob = store.insert(user("bob")).getId();
+        long carol = store.insert(user("carol")).getId();
+
+        assertThat(store.findByEmail("alice@example.com")).get().extracting(User::getId).isEqualTo(alice);
+        assertThat(store.findByEmail("bob@example.com")).get().extracting(User::getId).isEqualTo(bob);
+        assertThat(store.findByEmail("carol@example.com")).get().extracting(User::getId).isEqualTo(carol);
+        assertThat(store.findByEmail("dave@example.com")).isEmpty();
+        assertThatThrownBy(() -> store.insert(user("bob"))).isInstanceOf(UserAlreadyExistsException.class);
+    }
+
+    @Test
+    void emailChangesAndDeletesKeepCollidingEmailsFindable() {
+        OffHeapUserStore store = open(SLAB_BYTES, true);
+        // alice takes the hash slot, bob goes to the overflow map
+        long alice = store.insert(user("alice")).getId();
+        long bob = store.insert(user("bob")).getId();
+
+        store.update(bob, 0L, user("bobby"));
+        assertThat(store.findByEmail("bob@example.com")).isEmpty();
+        assertThat(store.findByEmail("bobby@example.com")).get().extracting(User::getId).isEqualTo(bob);
+        assertThatThrownBy(() -> store.update(alice, 0L, user("bobby")))
+                .isInstanceOf(UserAlreadyExistsException.class);
+
+        // Freeing the slot leaves the overflowed email where it is
+        store.delete(alice);
+        assertThat(store.findByEmail("alice@example.com")).isEmpty();
+        assertThat(store.findByEmail("bobby@example.com")).get().extracting(User::getId).isEqualTo(bob);
+        long alice2 = store.insert(user("alice")).getId();
+        assertThat(store.findByEmail("alice@example.com")).get().extracting(User::getId).isEqualTo(alice2);
+
+        store.update(alice2, 0L, user("bob"));
+        assertThat(store.findByEmail("alice@example.com")).isEmpty();
+        assertThat(store.findByEmail("bob@example.com")).get().extracting(User::getId).isEqualTo(alice2);
+
+        store.delete(bob);
+        assertThat(store.findByEmail("bobby@example.com")).isEmpty();
+        assertThat(store.insert(user("bobby")).getId()).isGreaterThan(alice2);
+        assertThat(store.findByEmail("bob@example.com")).get().extracting(User::getId).isEqualTo(alice2);
+    }
+
+    @Test
+    void compactionMovesLiveRecordsAndDropsDeadOnes() {
+        OffHeapUserStore store = open(SLAB_BYTES, false);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ids.add(store.insert(user("user" + i)).getId());
+        }
+        for (int i = 0; i < 20; i += 2) {
+            store.delete(ids.get(i));
+        }
+        store.update(ids.get(1), 0L, user("renamed"));
+
+        for (int i = 0; i < 20; i++) {
+            store.compact();
+        }
+
+        List<Long> live = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            long id = ids.get(i);
+            if (i % 2 == 0) {
+                assertThat(store.findById(id)).isEmpty();
+                continue;
+            }
+            live.add(id);
+            String name = i == 1 ? "renamed" : "user" + i;
+            assertThat(store.findById(id)).get().extracting(User::getName).isEqualTo(name);
+            assertThat(store.findByEmail(name + "@example.com")).get().extracting(User::getId).isEqualTo(id);
+        }
+        assertThat(store.findResponsePage(0, 100, null)).extracting(UserResponse::getId)
+                .containsExactlyElementsOf(live);
+
+        // Freed slabs take new records without disturbing the moved ones
+        for (int i = 20; i < 40; i++) {
+            store.insert(user("user" + i));
+        }
+        assertThat(store.findAll()).hasSize(30);
+        assertThat(store.findById(ids.get(1))).get().extracting(User::getName).isEqualTo("renamed");
+    }
+
+    @Test
+    void pagesWalkPastLongRunsOfDeletedIds() {
+        OffHeapUserStore store = open(1024 * 1024, false);
+        int count = OffHeapUserStore.PAGE_WALK_CHUNK * 2 + 10;
+        long last = 0;
+        for (int i = 0; i < count; i++) {
+            last = store.insert(user("user" + i)).getId();
+        }
+        for (long id = 1; id < last; id++) {
+            store.delete(id);
+        }
+
+        assertThat(store.findPage(0, 10, null)).extracting(User::getId).containsExactly(last);
+        assertThatThrownBy(() -> store.findPage(0, 10, Duration.ZERO))
+                .isInstanceOf(QueryTimeoutException.class);
+        // Runs out between two stretches of the walk
+        assertThatThrownBy(() -> store.findPage(0, 10, Duration.ofNanos(1)))
+                .isInstanceOf(QueryTimeoutException.class);
+    }
+
+    private OffHeapUserStore open(int slabBytes, boolean collidingEmails) {
+        UserStoreProperties properties = new UserStoreProperties();
+        properties.getOffheap().setExpectedUsers(1024);
+        properties.getOffheap().setSlabBytes(slabBytes);
+        properties.getOffheap().setCompactionThreshold(0);
+        // The tests compact by hand
+        properties.getOffheap().setCompactionInterval(Duration.ofHours(1));
+        OffHeapUserStore store = collidingEmails
+                ? new OffHeapUserStore(properties) {
+                    @Override
+                    long emailHash(byte[] email) {
+                        return 42;
+                    }
+                }
+                : new OffHeapUserStore(properties);
+        store.start();
+        opened.add(store);
+        return store;
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(name + "@example.com");
+        user.setPhone("555-0100");
+        return user;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.restapi.service;
+
+import com.example.restapi.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserWriteAheadLogTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void readAllReturnsAppendedRecordsInOrder() throws IOException {
+        try (UserWriteAheadLog wal = new UserWriteAheadLog(directory, 1024 * 1024)) {
+            wal.reset(1);
+            wal.append(user(1, "first"));
+            wal.append(user(2, "second"));
+        }
+        
+        List<UserWriteAheadLog.Entry> entries = new UserWriteAheadLog(directory, 1024 * 1024).readAll();
+        
+        assertThat(entries).extracting(UserWriteAheadLog.Entry::seq).containsExactly(1L, 2L);
+        assertThat(entries.get(1).user().getEmail()).isEqualTo("second@example.com");
+        assertThat(entries.get(1).user().getPhone()).isNull();
+    }
+    
+    @Test
+    void replayIgnoresATornTail() throws IOException {
+        try (UserWriteAheadLog wal = new UserWriteAheadLog(directory, 1024 * 1024)) {
+            wal.reset(1);
+            wal.append(user(1, "first"));
+            wal.append(user(2, "second"));
+            wal.append(user(3, "third"));
+        }
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        
+        List<UserWriteAheadLog.Entry> entries = new UserWriteAheadLog(directory, 1024 * 1024).readAll();
+        
+        assertThat(entries).extracting(entry -> entry.user().getName()).containsExactly("first", "second");
+    }
+    
+    @Test
+    void releaseEmptiesTheLogOnceEverythingIsCommitted() throws IOException {
+        try (UserWriteAheadLog wal = new UserWriteAheadLog(directory, 64)) {
+            wal.reset(1);
+            for (int i = 1; i <= 5; i++) {
+                wal.append(user(i, "user" + i));
+            }
+            assertThat(segments()).hasSizeGreaterThan(1);
+            
+            wal.release(4);
+            assertThat(wal.readAll()).extracting(UserWriteAheadLog.Entry::seq).containsExactly(5L);
+            
+            wal.release(5);
+            assertThat(wal.readAll()).isEmpty();
+            assertThat(wal.sizeBytes()).isZero();
+        }
+    }
+    
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+    
+    static User user(long id, String name) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        user.setEmail(name + "@example.com");
+        user.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+        return user;
+    }
+}
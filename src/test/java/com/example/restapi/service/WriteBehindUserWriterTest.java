@@ -0,0 +1,138 @@
+package com.example.restapi.service;
+
+import com.example.restapi.model.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.Cache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static com.example.restapi.service.UserWriteAheadLogTest.user;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WriteBehindUserWriterTest {
+    
+    @TempDir
+    Path directory;
+    
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private WriteBehindUserWriter writer;
+    
+    @BeforeEach
+    void createSchema() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:file:" + directory.resolve("db") + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create sequence users_seq start with 1 increment by 50");
+        jdbcTemplate.execute("create table users (id bigint primary key, name varchar(255) not null, "
+                + "email varchar(255) not null unique, phone varchar(255), version bigint, "
+                + "updated_at timestamp(6) with time zone)");
+        jdbcTemplate.execute("create table user_wal_checkpoint (id int primary key, seq bigint not null)");
+    }
+    
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        if (writer != null) {
+            writer.shutdown();
+        }
+        jdbcTemplate.execute("shutdown");
+    }
+    
+    @Test
+    void replaysOnlyCreatesPastTheCheckpoint() throws IOException, InterruptedException {
+        log(user(1, "committed"), user(2, "second"), user(3, "third"));
+        insertRow(1, "committed@example.com");
+        jdbcTemplate.update("insert into user_wal_checkpoint values (1, 1)");
+        
+        writer = start();
+        
+        assertThat(jdbcTemplate.queryForList("select email from users order by id", String.class))
+                .containsExactly("committed@example.com", "second@example.com", "third@example.com");
+        assertThat(checkpoint()).isEqualTo(3);
+        assertThat(writer.getDroppedCreates()).isZero();
+        
+        writer.shutdown();
+        writer = start();
+        assertThat(jdbcTemplate.queryForObject("select count(*) from users", Integer.class)).isEqualTo(3);
+    }
+    
+    @Test
+    void replayDropsCreatesWhoseEmailWasTaken() throws IOException, InterruptedException {
+        log(user(1, "taken"), user(2, "free"));
+        // An update gave another user this email before the create committed
+        insertRow(100, "taken@example.com");
+        
+        writer = start();
+        
+        assertThat(jdbcTemplate.queryForList("select id from users order by id", Long.class))
+                .containsExactly(2L, 100L);
+        assertThat(writer.getDroppedCreates()).isEqualTo(1);
+        assertThat(checkpoint()).isEqualTo(2);
+        
+        // The dropped create is past the checkpoint now, so a restart is clean
+        writer.shutdown();
+        writer = start();
+        assertThat(writer.getDroppedCreates()).isZero();
+    }
+    
+    @Test
+    void refusesAnInMemoryDatabase() {
+        JdbcDataSource memory = new JdbcDataSource();
+        memory.setURL("jdbc:h2:mem:write-behind-test");
+        WriteBehindUserWriter inMemory = new WriteBehindUserWriter(properties(), new JdbcTemplate(memory),
+                new DataSourceTransactionManager(memory), mock(EntityManagerFactory.class));
+        
+        assertThatThrownBy(inMemory::start).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("persistent database");
+    }
+    
+    private void log(User... users) throws IOException {
+        Files.createDirectories(directory.resolve("wal"));
+        try (UserWriteAheadLog wal = new UserWriteAheadLog(directory.resolve("wal"), 1024 * 1024)) {
+            wal.reset(1);
+            for (User user : users) {
+                wal.append(user);
+            }
+        }
+    }
+    
+    private void insertRow(long id, String email) {
+        jdbcTemplate.update("insert into users values (?, 'existing', ?, null, 0, ?)",
+                id, email, Timestamp.from(Instant.now()));
+    }
+    
+    private long checkpoint() {
+        return jdbcTemplate.queryForObject("select seq from user_wal_checkpoint where id = 1", Long.class);
+    }
+    
+    private WriteBehindUserWriter start() throws IOException {
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class, RETURNS_DEEP_STUBS);
+        when(entityManagerFactory.getCache().unwrap(Cache.class)).thenReturn(mock(Cache.class));
+        WriteBehindUserWriter started = new WriteBehindUserWriter(properties(), jdbcTemplate,
+                new DataSourceTransactionManager(dataSource), entityManagerFactory);
+        started.start();
+        return started;
+    }
+    
+    private WriteBehindProperties properties() {
+        WriteBehindProperties properties = new WriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setWalDirectory(directory.resolve("wal"));
+        return properties;
+    }
+}